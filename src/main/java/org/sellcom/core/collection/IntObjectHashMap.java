@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.function.IntObjConsumer;
+
+/**
+ * Hash map mapping integers to objects.
+ * <p>
+ * Unlike {@link SparseArray}, which keeps its indices sorted, this map looks up, sets and removes elements in expected constant time,
+ * so it suits large maps with random insertions.
+ * It offers the same methods, except for those relying on the order of the indices.
+ * <p>
+ * Entries are stored in flat arrays with open addressing and linear probing.
+ * Removed entries do not leave tombstones: the following entries of the probe sequence are shifted back instead,
+ * so that lookups do not slow down as elements are removed.
+ *
+ * @since 2.1
+ */
+public class IntObjectHashMap<E> implements Cloneable {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	private static final int FREE = -1;
+
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private Object[] elements;
+
+	private int[] indices;
+
+	private final float loadFactor;
+
+	private int size;
+
+	private int threshold;
+
+
+	/**
+	 * Creates an empty map.
+	 *
+	 * @since 2.1
+	 */
+	public IntObjectHashMap() {
+		this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * Creates an empty map able to hold the given number of elements without growing.
+	 *
+	 * @throws IllegalArgumentException if {@code initialCapacity} is negative
+	 *
+	 * @since 2.1
+	 */
+	public IntObjectHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * Creates an empty map able to hold the given number of elements without growing, with the given load factor.
+	 * Lower load factors make lookups faster at the expense of memory.
+	 *
+	 * @throws IllegalArgumentException if {@code initialCapacity} is negative
+	 * @throws IllegalArgumentException if {@code loadFactor} is not between 0 and 1, exclusive
+	 *
+	 * @since 2.1
+	 */
+	public IntObjectHashMap(int initialCapacity, float loadFactor) {
+		Contract.checkArgument(initialCapacity >= 0, "Initial capacity must not be negative: {0}", initialCapacity);
+		Contract.checkArgument((loadFactor > 0.0f) && (loadFactor < 1.0f), "Load factor must be between 0 and 1, exclusive: {0}", loadFactor);
+
+		this.loadFactor = loadFactor;
+
+		allocate(tableSizeFor(initialCapacity));
+	}
+
+
+	/**
+	 * Removes all elements from this map.
+	 *
+	 * @since 2.1
+	 */
+	public void clear() {
+		Arrays.fill(elements, null);
+		Arrays.fill(indices, FREE);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public IntObjectHashMap<E> clone() {
+		IntObjectHashMap<E> clone = null;
+
+		try {
+			clone = (IntObjectHashMap<E>) super.clone();
+			clone.elements = elements.clone();
+			clone.indices = indices.clone();
+		} catch (CloneNotSupportedException e) {
+			; // Ignore
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Checks whether this map contains the given element.
+	 * Costs O(n).
+	 *
+	 * @throws IllegalArgumentException if {@code element} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public boolean containsElement(E element) {
+		Contract.checkArgument(element != null, "Element must not be null");
+
+		for (int slot = 0; slot < indices.length; slot++) {
+			if ((indices[slot] != FREE) && element.equals(elements[slot])) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether this map contains the given index.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	public boolean containsIndex(int index) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+		return findSlot(index) >= 0;
+	}
+
+	/**
+	 * Increases the capacity of this map, if necessary, to ensure that it can hold at least the given number of elements without growing.
+	 *
+	 * @throws IllegalArgumentException if {@code minCapacity} is negative
+	 *
+	 * @since 2.1
+	 */
+	public void ensureCapacity(int minCapacity) {
+		Contract.checkArgument(minCapacity >= 0, "Minimum capacity must not be negative: {0}", minCapacity);
+
+		if (minCapacity > threshold) {
+			rehash(tableSizeFor(minCapacity));
+		}
+	}
+
+	/**
+	 * Performs the given action for each element in this map until all elements have been processed or the action throws an exception.
+	 * Actions are performed in no particular order.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(IntObjConsumer<? super E> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		for (int slot = 0; slot < indices.length; slot++) {
+			if (indices[slot] != FREE) {
+				action.accept(indices[slot], (E) elements[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the element at the given index in this map.
+	 * Returns {@code null} if there is no element in this map at the given index.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	public E get(int index) {
+		return getOrDefault(index, null);
+	}
+
+	/**
+	 * Returns the element at the given index in this map.
+	 * Returns the given default value if there is no element in this map at the given index.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings("unchecked")
+	public E getOrDefault(int index, E defaultValue) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+		int slot = findSlot(index);
+		if (slot < 0) {
+			return defaultValue;
+		} else {
+			return (E) elements[slot];
+		}
+	}
+
+	/**
+	 * Checks whether this map is empty.
+	 *
+	 * @since 2.1
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * Removes and returns the element at the given index in this map.
+	 * Returns {@code null} if there is no element in this map at the given index.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings("unchecked")
+	public E remove(int index) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+		int slot = findSlot(index);
+		if (slot < 0) {
+			return null;
+		} else {
+			E element = (E) elements[slot];
+
+			removeSlot(slot);
+
+			return element;
+		}
+	}
+
+	/**
+	 * Sets the element at the given index in this map to the given value.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 * @throws IllegalArgumentException if {@code value} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void set(int index, E value) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		int slot = findSlot(index);
+		if (slot < 0) {
+			insert(-(slot + 1), index, value);
+		} else {
+			elements[slot] = value;
+		}
+	}
+
+	/**
+	 * If there is no element in this map at the given index, sets it to the given value.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 * @throws IllegalArgumentException if {@code value} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setIfAbsent(int index, E value) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		int slot = findSlot(index);
+		if (slot < 0) {
+			insert(-(slot + 1), index, value);
+		}
+	}
+
+	/**
+	 * Returns the number of elements in this map.
+	 *
+	 * @since 2.1
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		if (size == 0) {
+			return "{}";
+		}
+
+		List<String> elementStrings = new ArrayList<>(size);
+		for (int slot = 0; slot < indices.length; slot++) {
+			if (indices[slot] != FREE) {
+				elementStrings.add(String.format("[%d]=%s", indices[slot], elements[slot]));
+			}
+		}
+
+		return String.format("{%s}", String.join(", ", elementStrings));
+	}
+
+	/**
+	 * Trims the capacity of this map to the smallest one able to hold its current elements.
+	 *
+	 * @since 2.1
+	 */
+	public void trimToSize() {
+		int targetCapacity = tableSizeFor(size);
+		if (targetCapacity < indices.length) {
+			rehash(targetCapacity);
+		}
+	}
+
+
+	private void allocate(int capacity) {
+		elements = new Object[capacity];
+		indices = new int[capacity];
+		Arrays.fill(indices, FREE);
+
+		// At least one slot must stay free to terminate the probe sequences
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	// Returns the slot holding the given index, or -(slot + 1) for the free slot where it would be inserted
+	private int findSlot(int index) {
+		int mask = indices.length - 1;
+
+		for (int slot = homeSlot(index, mask); ; slot = (slot + 1) & mask) {
+			if (indices[slot] == index) {
+				return slot;
+			}
+			if (indices[slot] == FREE) {
+				return -(slot + 1);
+			}
+		}
+	}
+
+	private static int homeSlot(int index, int mask) {
+		int hash = index * 0x9E3779B9; // Spreads sequential indices over the table
+
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void insert(int slot, int index, Object value) {
+		indices[slot] = index;
+		elements[slot] = value;
+		size += 1;
+
+		if (size > threshold) {
+			Contract.checkState(indices.length < MAXIMUM_CAPACITY, "Map must not grow over its maximum capacity");
+
+			rehash(2 * indices.length);
+		}
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldElements = elements;
+		int[] oldIndices = indices;
+
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for (int oldSlot = 0; oldSlot < oldIndices.length; oldSlot++) {
+			if (oldIndices[oldSlot] != FREE) {
+				int slot = homeSlot(oldIndices[oldSlot], mask);
+				while (indices[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+
+				indices[slot] = oldIndices[oldSlot];
+				elements[slot] = oldElements[oldSlot];
+			}
+		}
+	}
+
+	private void removeSlot(int slot) {
+		int mask = indices.length - 1;
+
+		// Shifts back every following entry of the probe sequence that may fill the gap, that is whose home slot does not lie between the gap and the entry
+		int gap = slot;
+		for (int current = (gap + 1) & mask; indices[current] != FREE; current = (current + 1) & mask) {
+			int home = homeSlot(indices[current], mask);
+			if (((current - home) & mask) >= ((current - gap) & mask)) {
+				indices[gap] = indices[current];
+				elements[gap] = elements[current];
+				gap = current;
+			}
+		}
+
+		indices[gap] = FREE;
+		elements[gap] = null;
+		size -= 1;
+	}
+
+	private int tableSizeFor(int elementCount) {
+		long minCapacity = Math.max(2L, (long) Math.ceil(elementCount / (double) loadFactor) + 1L);
+		Contract.checkArgument(minCapacity <= MAXIMUM_CAPACITY, "Capacity must not exceed the maximum capacity: {0}", elementCount);
+
+		return Integer.highestOneBit((int) ((minCapacity << 1) - 1));
+	}
+
+}
@@ -23,6 +23,7 @@
 import org.sellcom.core.Contract;
 import org.sellcom.core.internal.util.ArrayUtils;
 import org.sellcom.core.util.MoreArrays;
+import org.sellcom.core.util.function.IntObjConsumer;
 
 /**
  * Sparse array mapping integers to objects.
@@ -60,6 +61,51 @@ public SparseArray(int initialCapacity) {
 		size = 0;
 	}
 
+	/**
+	 * Creates a sparse array with the given elements at the given indices, which need not be sorted.
+	 * If an index is repeated, its last element is kept.
+	 * Sorts the indices once, so costs O(n log n) rather than O(n^2) of setting the elements one by one.
+	 *
+	 * @throws IllegalArgumentException if {@code indices} is {@code null}
+	 * @throws IllegalArgumentException if {@code elements} is {@code null}
+	 * @throws IllegalArgumentException if {@code indices} and {@code elements} differ in length
+	 * @throws IllegalArgumentException if any index is negative
+	 * @throws IllegalArgumentException if any element is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public SparseArray(int[] indices, E[] elements) {
+		Contract.checkArgument(indices != null, "Indices must not be null");
+		Contract.checkArgument(elements != null, "Elements must not be null");
+		Contract.checkArgument(indices.length == elements.length, "Indices and elements must have the same length: {0} != {1}", indices.length, elements.length);
+
+		// The original positions in the lower bits make the sort stable
+		long[] sortKeys = new long[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			Contract.checkArgument(indices[i] >= 0, "Index must not be negative: {0}", indices[i]);
+			Contract.checkArgument(elements[i] != null, "Element must not be null");
+
+			sortKeys[i] = ((long) indices[i] << 32) | i;
+		}
+
+		Arrays.sort(sortKeys);
+
+		this.elements = new Object[indices.length];
+		this.indices = new int[indices.length];
+		for (long sortKey : sortKeys) {
+			int index = (int) (sortKey >>> 32);
+			int position = (int) sortKey;
+
+			if ((size > 0) && (this.indices[size - 1] == index)) {
+				this.elements[size - 1] = elements[position];
+			} else {
+				this.indices[size] = index;
+				this.elements[size] = elements[position];
+				size += 1;
+			}
+		}
+	}
+
 
 	/**
 	 * Removes all elements from this array.
@@ -112,6 +158,15 @@ public boolean containsIndex(int index) {
 		return Arrays.binarySearch(indices, 0, size, index) >= 0;
 	}
 
+	/**
+	 * Returns a cursor over the elements of this array, positioned before the first element.
+	 *
+	 * @since 2.1
+	 */
+	public Cursor<E> cursor() {
+		return new Cursor<>(this);
+	}
+
 	/**
 	 * Increases the capacity of this array, if necessary, to ensure that it can hold at least the given number of elements.
 	 *
@@ -148,6 +203,36 @@ public void forEach(BiConsumer<Integer, ? super E> action) {
 		}
 	}
 
+	/**
+	 * Performs the given action for each element in this array with an index in the given range until all elements have been processed or the action throws an exception.
+	 * The range is from the given from-index, inclusive, to the given to-index, exclusive.
+	 * Actions are performed in the order of the element indices, and neither the indices nor the elements are boxed.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 * <p>
+	 * Finds the first element by binary search, so costs O(log n + k) for k elements in the range.
+	 *
+	 * @throws IllegalArgumentException if {@code fromIndex} is negative
+	 * @throws IllegalArgumentException if {@code toIndex} is less than {@code fromIndex}
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEachInRange(int fromIndex, int toIndex, IntObjConsumer<? super E> action) {
+		Contract.checkArgument(fromIndex >= 0, "From-index must not be negative: {0}", fromIndex);
+		Contract.checkArgument(toIndex >= fromIndex, "To-index must not be less than from-index: {1} < {0}", fromIndex, toIndex);
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		int internalIndex = Arrays.binarySearch(indices, 0, size, fromIndex);
+		if (internalIndex < 0) {
+			internalIndex = -(internalIndex + 1);
+		}
+
+		for (int i = internalIndex; (i < size) && (indices[i] < toIndex); i++) {
+			action.accept(indices[i], (E) elements[i]);
+		}
+	}
+
 	/**
 	 * Returns the element at the given index in this array.
 	 * Returns {@code null} if there is no element in this array at the given index.
@@ -259,6 +344,12 @@ public void set(int index, E value) {
 		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
 		Contract.checkArgument(value != null, "Value must not be null");
 
+		if ((size == 0) || (index > indices[size - 1])) {
+			append(index, value);
+
+			return;
+		}
+
 		int internalIndex = Arrays.binarySearch(indices, 0, size, index);
 		if (internalIndex < 0) {
 			ensureCapacity(size + 1);
@@ -272,10 +363,56 @@ public void set(int index, E value) {
 
 			size += 1;
 		} else {
-			int elementIndex = indices[internalIndex];
+			elements[internalIndex] = value;
+		}
+	}
 
-			elements[elementIndex] = value;
+	/**
+	 * Sets the elements of this array at the indices of the given array to the elements of the given array.
+	 * Merges both arrays in place, so costs O(n + m) rather than O(m log n + m * n) of setting the elements one by one.
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setAll(SparseArray<? extends E> other) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		// Counts the merged elements first, so that the arrays can be merged from their ends without overwriting unmerged elements
+		int mergedSize = size + other.size;
+		for (int i = 0, j = 0; (i < size) && (j < other.size);) {
+			if (indices[i] < other.indices[j]) {
+				i += 1;
+			} else if (indices[i] > other.indices[j]) {
+				j += 1;
+			} else {
+				mergedSize -= 1;
+				i += 1;
+				j += 1;
+			}
+		}
+
+		ensureCapacity(mergedSize);
+
+		// Once the other array is merged, the remaining elements of this array are already in place
+		int i = size - 1;
+		for (int j = other.size - 1, k = mergedSize - 1; j >= 0; k--) {
+			if ((i >= 0) && (indices[i] > other.indices[j])) {
+				indices[k] = indices[i];
+				elements[k] = elements[i];
+				i -= 1;
+			} else {
+				if ((i >= 0) && (indices[i] == other.indices[j])) {
+					i -= 1;
+				}
+
+				indices[k] = other.indices[j];
+				elements[k] = other.elements[j];
+				j -= 1;
+			}
 		}
+
+		size = mergedSize;
 	}
 
 	/**
@@ -290,6 +427,12 @@ public void setIfAbsent(int index, E value) {
 		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
 		Contract.checkArgument(value != null, "Value must not be null");
 
+		if ((size == 0) || (index > indices[size - 1])) {
+			append(index, value);
+
+			return;
+		}
+
 		int internalIndex = Arrays.binarySearch(indices, 0, size, index);
 		if (internalIndex < 0) {
 			ensureCapacity(size + 1);
@@ -334,10 +477,121 @@ public String toString() {
 	 * @since 1.0
 	 */
 	public void trimToSize() {
-		if (elements.length < size) {
+		if (elements.length > size) {
 			elements = Arrays.copyOf(elements, size);
 			indices = Arrays.copyOf(indices, size);
 		}
 	}
 
+
+	private void append(int index, E value) {
+		ensureCapacity(size + 1);
+
+		indices[size] = index;
+		elements[size] = value;
+		size += 1;
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	/**
+	 * Cursor over the elements of a sparse array, in the order of their indices.
+	 * Unlike an iterator, a cursor can be repositioned and reused, and boxes neither the indices nor the elements.
+	 * <p>
+	 * Modifying the array while a cursor is in use leaves the position of the cursor unspecified.
+	 *
+	 * @since 2.1
+	 */
+	public static final class Cursor<E> {
+
+		private final SparseArray<E> array;
+
+		private int position = -1;
+
+
+		private Cursor(SparseArray<E> array) {
+			this.array = array;
+		}
+
+
+		/**
+		 * Returns the index of the element this cursor is positioned at.
+		 *
+		 * @throws IllegalStateException if this cursor is not positioned at an element
+		 *
+		 * @since 2.1
+		 */
+		public int index() {
+			checkPositioned();
+
+			return array.indices[position];
+		}
+
+		/**
+		 * Advances this cursor to the next element.
+		 * Returns whether there is such an element.
+		 *
+		 * @since 2.1
+		 */
+		public boolean next() {
+			if (position < array.size) {
+				position += 1;
+			}
+
+			return (position < array.size);
+		}
+
+		/**
+		 * Positions this cursor before the first element.
+		 *
+		 * @since 2.1
+		 */
+		public void reset() {
+			position = -1;
+		}
+
+		/**
+		 * Positions this cursor at the first element at or after the given index.
+		 * Returns whether there is such an element.
+		 * <p>
+		 * When seeking forward, searches only the elements after the current one,
+		 * so that walking several arrays in step, for example when intersecting them, stays cheap.
+		 *
+		 * @throws IllegalArgumentException if {@code index} is negative
+		 *
+		 * @since 2.1
+		 */
+		public boolean seek(int index) {
+			Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+			int fromPosition = ((position >= 0) && (position < array.size) && (array.indices[position] <= index)) ? position : 0;
+			int internalIndex = Arrays.binarySearch(array.indices, fromPosition, array.size, index);
+			position = (internalIndex >= 0) ? internalIndex : -(internalIndex + 1);
+
+			return (position < array.size);
+		}
+
+		/**
+		 * Returns the element this cursor is positioned at.
+		 *
+		 * @throws IllegalStateException if this cursor is not positioned at an element
+		 *
+		 * @since 2.1
+		 */
+		@SuppressWarnings("unchecked")
+		public E value() {
+			checkPositioned();
+
+			return (E) array.elements[position];
+		}
+
+
+		private void checkPositioned() {
+			Contract.checkState((position >= 0) && (position < array.size), "Cursor is not positioned at an element");
+		}
+
+	}
+
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.internal.util.ArrayUtils;
+
+/**
+ * Sparse array mapping integers to booleans, stored as a sparse bit set.
+ * <p>
+ * Only the non-zero 64-bit words of the bit set are stored, sorted by their index.
+ *
+ * @since 2.1
+ */
+public class SparseBooleanArray implements Cloneable {
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private int size;
+
+	private int wordCount;
+
+	private int[] wordIndices;
+
+	private long[] words;
+
+
+	/**
+	 * Creates an empty sparse array.
+	 *
+	 * @since 2.1
+	 */
+	public SparseBooleanArray() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty sparse array with the given capacity in 64-bit words.
+	 *
+	 * @since 2.1
+	 */
+	public SparseBooleanArray(int initialCapacity) {
+		wordIndices = new int[initialCapacity];
+		words = new long[initialCapacity];
+		wordCount = 0;
+		size = 0;
+	}
+
+
+	/**
+	 * Sets all elements of this array to {@code false}.
+	 *
+	 * @since 2.1
+	 */
+	public void clear() {
+		wordCount = 0;
+		size = 0;
+	}
+
+	@Override
+	public SparseBooleanArray clone() {
+		SparseBooleanArray clone = null;
+
+		try {
+			clone = (SparseBooleanArray) super.clone();
+			clone.wordIndices = wordIndices.clone();
+			clone.words = words.clone();
+		} catch (CloneNotSupportedException e) {
+			; // Ignore
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Increases the capacity of this array, if necessary, to ensure that it can hold at least the given number of non-zero 64-bit words.
+	 *
+	 * @throws IllegalArgumentException if {@code minCapacity} is negative
+	 *
+	 * @since 2.1
+	 */
+	public void ensureCapacity(int minCapacity) {
+		Contract.checkArgument(minCapacity >= 0, "Minimum capacity must not be negative: {0}", minCapacity);
+
+		if (minCapacity > words.length) {
+			int targetCapacity = Math.max(minCapacity, 2 * words.length);
+
+			wordIndices = Arrays.copyOf(wordIndices, targetCapacity);
+			words = Arrays.copyOf(words, targetCapacity);
+		}
+	}
+
+	/**
+	 * Performs the given action for the index of each {@code true} element in this array until all elements have been processed or the action throws an exception.
+	 * Actions are performed in the order of the element indices.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void forEach(IntConsumer action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		for (int i = 0; i < wordCount; i++) {
+			int firstIndex = wordIndices[i] << 6;
+			for (long word = words[i]; word != 0L; word &= (word - 1L)) {
+				action.accept(firstIndex + Long.numberOfTrailingZeros(word));
+			}
+		}
+	}
+
+	/**
+	 * Returns the element at the given index in this array.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	public boolean get(int index) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+		int wordPosition = Arrays.binarySearch(wordIndices, 0, wordCount, index >>> 6);
+
+		return (wordPosition >= 0) && ((words[wordPosition] & (1L << index)) != 0L);
+	}
+
+	/**
+	 * Checks whether all elements of this array are {@code false}.
+	 *
+	 * @since 2.1
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	/**
+	 * Returns the index of the first {@code true} element in this array at or after the given index.
+	 * Returns {@code -1} if there is no such element.
+	 *
+	 * @throws IllegalArgumentException if {@code fromIndex} is negative
+	 *
+	 * @since 2.1
+	 */
+	public int nextIndex(int fromIndex) {
+		Contract.checkArgument(fromIndex >= 0, "From-index must not be negative: {0}", fromIndex);
+
+		int wordPosition = Arrays.binarySearch(wordIndices, 0, wordCount, fromIndex >>> 6);
+		if (wordPosition >= 0) {
+			long word = words[wordPosition] & (-1L << fromIndex);
+			if (word != 0L) {
+				return (wordIndices[wordPosition] << 6) + Long.numberOfTrailingZeros(word);
+			}
+
+			wordPosition += 1;
+		} else {
+			wordPosition = -wordPosition - 1;
+		}
+
+		if (wordPosition < wordCount) {
+			return (wordIndices[wordPosition] << 6) + Long.numberOfTrailingZeros(words[wordPosition]);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Sets the element at the given index in this array to the given value.
+	 *
+	 * @throws IllegalArgumentException if {@code index} is negative
+	 *
+	 * @since 2.1
+	 */
+	public void set(int index, boolean value) {
+		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+		long mask = 1L << index;
+
+		int wordPosition = Arrays.binarySearch(wordIndices, 0, wordCount, index >>> 6);
+		if (wordPosition >= 0) {
+			long word = words[wordPosition];
+			long updatedWord = value ? (word | mask) : (word & ~mask);
+			if (updatedWord == word) {
+				return;
+			}
+
+			size += value ? 1 : -1;
+
+			if (updatedWord == 0L) {
+				ArrayUtils.shiftLeft(wordIndices, wordPosition + 1, wordCount);
+				ArrayUtils.shiftLeft(words, wordPosition + 1, wordCount);
+				wordCount -= 1;
+			} else {
+				words[wordPosition] = updatedWord;
+			}
+		} else if (value) {
+			ensureCapacity(wordCount + 1);
+
+			wordPosition = -wordPosition - 1;
+
+			ArrayUtils.shiftRight(wordIndices, wordPosition, wordCount);
+			wordIndices[wordPosition] = index >>> 6;
+			ArrayUtils.shiftRight(words, wordPosition, wordCount);
+			words[wordPosition] = mask;
+
+			wordCount += 1;
+			size += 1;
+		}
+	}
+
+	/**
+	 * Returns the number of {@code true} elements in this array.
+	 *
+	 * @since 2.1
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		if (size == 0) {
+			return "{}";
+		}
+
+		List<String> indexStrings = new ArrayList<>(size);
+		forEach(index -> indexStrings.add(String.valueOf(index)));
+
+		return String.format("{%s}", String.join(", ", indexStrings));
+	}
+
+	/**
+	 * Trims the capacity of this array to its current number of non-zero 64-bit words.
+	 *
+	 * @since 2.1
+	 */
+	public void trimToSize() {
+		if (words.length > wordCount) {
+			wordIndices = Arrays.copyOf(wordIndices, wordCount);
+			words = Arrays.copyOf(words, wordCount);
+		}
+	}
+
+}
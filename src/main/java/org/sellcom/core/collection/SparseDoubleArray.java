@@ -19,10 +19,12 @@
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 
 import org.sellcom.core.Contract;
 import org.sellcom.core.internal.util.ArrayUtils;
 import org.sellcom.core.util.MoreArrays;
+import org.sellcom.core.util.function.IntDoubleConsumer;
 
 /**
  * Sparse array mapping integers to doubles.
@@ -33,6 +35,8 @@ public class SparseDoubleArray implements Cloneable {
 
 	private static final int DEFAULT_CAPACITY = 10;
 
+	private static final int PARALLEL_CHUNK_SIZE = 1 << 14;
+
 	private double[] elements;
 
 	private int[] indices;
@@ -60,6 +64,77 @@ public SparseDoubleArray(int initialCapacity) {
 		size = 0;
 	}
 
+	/**
+	 * Creates a sparse array with the given elements at the given indices, which need not be sorted.
+	 * If an index is repeated, its last element is kept.
+	 * Sorts the indices once, so costs O(n log n) rather than O(n^2) of setting the elements one by one.
+	 *
+	 * @throws IllegalArgumentException if {@code indices} is {@code null}
+	 * @throws IllegalArgumentException if {@code elements} is {@code null}
+	 * @throws IllegalArgumentException if {@code indices} and {@code elements} differ in length
+	 * @throws IllegalArgumentException if any index is negative
+	 *
+	 * @since 2.1
+	 */
+	public SparseDoubleArray(int[] indices, double[] elements) {
+		Contract.checkArgument(indices != null, "Indices must not be null");
+		Contract.checkArgument(elements != null, "Elements must not be null");
+		Contract.checkArgument(indices.length == elements.length, "Indices and elements must have the same length: {0} != {1}", indices.length, elements.length);
+
+		// The original positions in the lower bits make the sort stable
+		long[] sortKeys = new long[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			Contract.checkArgument(indices[i] >= 0, "Index must not be negative: {0}", indices[i]);
+
+			sortKeys[i] = ((long) indices[i] << 32) | i;
+		}
+
+		Arrays.sort(sortKeys);
+
+		this.elements = new double[indices.length];
+		this.indices = new int[indices.length];
+		for (long sortKey : sortKeys) {
+			int index = (int) (sortKey >>> 32);
+			int position = (int) sortKey;
+
+			if ((size > 0) && (this.indices[size - 1] == index)) {
+				this.elements[size - 1] = elements[position];
+			} else {
+				this.indices[size] = index;
+				this.elements[size] = elements[position];
+				size += 1;
+			}
+		}
+	}
+
+
+	/**
+	 * Adds the elements of the given array to the elements of this array at the same indices.
+	 * Merges both arrays in place, so costs O(n + m).
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void add(SparseDoubleArray other) {
+		add(other, 1.0);
+	}
+
+	/**
+	 * Adds the elements of the given array multiplied by the given factor to the elements of this array at the same indices,
+	 * as in the {@code axpy} operation of linear algebra.
+	 * Merges both arrays in place, so costs O(n + m).
+	 * Elements cancelling out to zero are kept.
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void add(SparseDoubleArray other, double factor) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		merge(other, factor, true);
+	}
 
 	/**
 	 * Removes all elements from this array.
@@ -109,6 +184,43 @@ public boolean containsIndex(int index) {
 		return Arrays.binarySearch(indices, 0, size, index) >= 0;
 	}
 
+	/**
+	 * Returns the cosine similarity of this array and the given array, taken as sparse vectors.
+	 * Returns {@code NaN} if either array has zero norm.
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public double cosine(SparseDoubleArray other) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		return dot(other) / (norm() * other.norm());
+	}
+
+	/**
+	 * Returns a cursor over the elements of this array, positioned before the first element.
+	 *
+	 * @since 2.1
+	 */
+	public Cursor cursor() {
+		return new Cursor(this);
+	}
+
+	/**
+	 * Returns the dot product of this array and the given array, taken as sparse vectors.
+	 * Walks both arrays in the order of their indices, so costs O(n + m).
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public double dot(SparseDoubleArray other) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		return dot(other, 0, size);
+	}
+
 	/**
 	 * Increases the capacity of this array, if necessary, to ensure that it can hold at least the given number of elements.
 	 *
@@ -144,6 +256,35 @@ public void forEach(BiConsumer<Integer, Double> action) {
 		}
 	}
 
+	/**
+	 * Performs the given action for each element in this array with an index in the given range until all elements have been processed or the action throws an exception.
+	 * The range is from the given from-index, inclusive, to the given to-index, exclusive.
+	 * Actions are performed in the order of the element indices, and neither the indices nor the elements are boxed.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 * <p>
+	 * Finds the first element by binary search, so costs O(log n + k) for k elements in the range.
+	 *
+	 * @throws IllegalArgumentException if {@code fromIndex} is negative
+	 * @throws IllegalArgumentException if {@code toIndex} is less than {@code fromIndex}
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void forEachInRange(int fromIndex, int toIndex, IntDoubleConsumer action) {
+		Contract.checkArgument(fromIndex >= 0, "From-index must not be negative: {0}", fromIndex);
+		Contract.checkArgument(toIndex >= fromIndex, "To-index must not be less than from-index: {1} < {0}", fromIndex, toIndex);
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		int internalIndex = Arrays.binarySearch(indices, 0, size, fromIndex);
+		if (internalIndex < 0) {
+			internalIndex = -(internalIndex + 1);
+		}
+
+		for (int i = internalIndex; (i < size) && (indices[i] < toIndex); i++) {
+			action.accept(indices[i], elements[i]);
+		}
+	}
+
 	/**
 	 * Returns the element at the given index in this array.
 	 * Returns the given default value if there is no element in this array at the given index.
@@ -200,6 +341,51 @@ public int lastIndexOf(double element, double tolerance) {
 		return (internalIndex == -1) ? -1 : indices[internalIndex];
 	}
 
+	/**
+	 * Returns the Euclidean norm of this array, taken as a sparse vector.
+	 *
+	 * @since 2.1
+	 */
+	public double norm() {
+		double sumOfSquares = 0.0;
+		for (int i = 0; i < size; i++) {
+			sumOfSquares += elements[i] * elements[i];
+		}
+
+		return Math.sqrt(sumOfSquares);
+	}
+
+	/**
+	 * Returns the dot product of this array and the given array, taken as sparse vectors, computed in parallel.
+	 * Splits the larger array into chunks whose products are computed in the common fork/join pool,
+	 * and falls back to {@link #dot(SparseDoubleArray)} for small arrays.
+	 * The result may differ from the sequential one by rounding errors, as the products are summed in a different order.
+	 * <p>
+	 * Neither array may be modified during the computation.
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public double parallelDot(SparseDoubleArray other) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		SparseDoubleArray larger = (size >= other.size) ? this : other;
+		SparseDoubleArray smaller = (larger == this) ? other : this;
+		if (larger.size <= PARALLEL_CHUNK_SIZE) {
+			return dot(other);
+		}
+
+		int chunkCount = ((larger.size - 1) / PARALLEL_CHUNK_SIZE) + 1;
+
+		return IntStream.range(0, chunkCount).parallel().mapToDouble(chunk -> {
+			int fromPosition = chunk * PARALLEL_CHUNK_SIZE;
+			int toPosition = Math.min(fromPosition + PARALLEL_CHUNK_SIZE, larger.size);
+
+			return larger.dot(smaller, fromPosition, toPosition);
+		}).sum();
+	}
+
 	/**
 	 * Removes and returns the element at the given index in this array.
 	 * Returns the given default value if there is no element in this array at the given index.
@@ -225,6 +411,17 @@ public double remove(int index, double defaultValue) {
 		}
 	}
 
+	/**
+	 * Multiplies all elements of this array by the given factor.
+	 *
+	 * @since 2.1
+	 */
+	public void scale(double factor) {
+		for (int i = 0; i < size; i++) {
+			elements[i] *= factor;
+		}
+	}
+
 	/**
 	 * Sets the element at the given index in this array to the given value.
 	 *
@@ -235,6 +432,12 @@ public double remove(int index, double defaultValue) {
 	public void set(int index, double value) {
 		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
 
+		if ((size == 0) || (index > indices[size - 1])) {
+			append(index, value);
+
+			return;
+		}
+
 		int internalIndex = Arrays.binarySearch(indices, 0, size, index);
 		if (internalIndex < 0) {
 			ensureCapacity(size + 1);
@@ -248,12 +451,24 @@ public void set(int index, double value) {
 
 			size += 1;
 		} else {
-			int elementIndex = indices[internalIndex];
-
-			elements[elementIndex] = value;
+			elements[internalIndex] = value;
 		}
 	}
 
+	/**
+	 * Sets the elements of this array at the indices of the given array to the elements of the given array.
+	 * Merges both arrays in place, so costs O(n + m) rather than O(m log n + m * n) of setting the elements one by one.
+	 *
+	 * @throws IllegalArgumentException if {@code other} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setAll(SparseDoubleArray other) {
+		Contract.checkArgument(other != null, "Other array must not be null");
+
+		merge(other, 1.0, false);
+	}
+
 	/**
 	 * If there is no element in this array at the given index, sets it to the given value.
 	 *
@@ -264,6 +479,12 @@ public void set(int index, double value) {
 	public void setIfAbsent(int index, double value) {
 		Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
 
+		if ((size == 0) || (index > indices[size - 1])) {
+			append(index, value);
+
+			return;
+		}
+
 		int internalIndex = Arrays.binarySearch(indices, 0, size, index);
 		if (internalIndex < 0) {
 			ensureCapacity(size + 1);
@@ -302,16 +523,274 @@ public String toString() {
 		return String.format("{%s}", String.join(", ", elementStrings));
 	}
 
+	/**
+	 * Returns a new array holding the given number of the largest elements of this array at their indices.
+	 * Among equal elements, the ones at lower indices are preferred.
+	 * Keeps the candidates in a heap, so costs O(n log k).
+	 *
+	 * @throws IllegalArgumentException if {@code count} is negative
+	 *
+	 * @since 2.1
+	 */
+	public SparseDoubleArray top(int count) {
+		Contract.checkArgument(count >= 0, "Count must not be negative: {0}", count);
+
+		// Internal positions of the candidates, the worst one first
+		int[] heap = new int[Math.min(count, size)];
+		int heapSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (heapSize < heap.length) {
+				heap[heapSize] = i;
+				siftUp(heap, heapSize);
+				heapSize += 1;
+			} else if ((heapSize > 0) && (elements[i] > elements[heap[0]])) {
+				heap[0] = i;
+				siftDown(heap, heapSize);
+			}
+		}
+
+		Arrays.sort(heap);
+
+		SparseDoubleArray top = new SparseDoubleArray(heap.length);
+		for (int position : heap) {
+			top.append(indices[position], elements[position]);
+		}
+
+		return top;
+	}
+
 	/**
 	 * Trims the capacity of this array to its current size.
 	 *
 	 * @since 1.0
 	 */
 	public void trimToSize() {
-		if (elements.length < size) {
+		if (elements.length > size) {
 			elements = Arrays.copyOf(elements, size);
 			indices = Arrays.copyOf(indices, size);
 		}
 	}
 
+
+	private void append(int index, double value) {
+		ensureCapacity(size + 1);
+
+		indices[size] = index;
+		elements[size] = value;
+		size += 1;
+	}
+
+	// Returns the dot product of the elements of this array at the given internal positions and the elements of the given array at the same indices
+	private double dot(SparseDoubleArray other, int fromPosition, int toPosition) {
+		if ((fromPosition == toPosition) || (other.size == 0)) {
+			return 0.0;
+		}
+
+		int j = Arrays.binarySearch(other.indices, 0, other.size, indices[fromPosition]);
+		if (j < 0) {
+			j = -(j + 1);
+		}
+
+		double product = 0.0;
+		for (int i = fromPosition; (i < toPosition) && (j < other.size);) {
+			if (indices[i] < other.indices[j]) {
+				i += 1;
+			} else if (indices[i] > other.indices[j]) {
+				j += 1;
+			} else {
+				product += elements[i] * other.elements[j];
+				i += 1;
+				j += 1;
+			}
+		}
+
+		return product;
+	}
+
+	// Checks whether the element at the former internal position ranks below the one at the latter, preferring lower indices among equal elements
+	private boolean isWorse(int formerPosition, int latterPosition) {
+		return (elements[formerPosition] < elements[latterPosition])
+			|| ((elements[formerPosition] == elements[latterPosition]) && (formerPosition > latterPosition));
+	}
+
+	// Merges the given array multiplied by the given factor into this array, adding to or replacing the elements at the same indices
+	private void merge(SparseDoubleArray other, double factor, boolean accumulate) {
+		// Counts the merged elements first, so that the arrays can be merged from their ends without overwriting unmerged elements
+		int mergedSize = size + other.size;
+		for (int i = 0, j = 0; (i < size) && (j < other.size);) {
+			if (indices[i] < other.indices[j]) {
+				i += 1;
+			} else if (indices[i] > other.indices[j]) {
+				j += 1;
+			} else {
+				mergedSize -= 1;
+				i += 1;
+				j += 1;
+			}
+		}
+
+		ensureCapacity(mergedSize);
+
+		// Once the other array is merged, the remaining elements of this array are already in place
+		int i = size - 1;
+		for (int j = other.size - 1, k = mergedSize - 1; j >= 0; k--) {
+			if ((i >= 0) && (indices[i] > other.indices[j])) {
+				indices[k] = indices[i];
+				elements[k] = elements[i];
+				i -= 1;
+			} else {
+				double element = factor * other.elements[j];
+				if ((i >= 0) && (indices[i] == other.indices[j])) {
+					if (accumulate) {
+						element += elements[i];
+					}
+
+					i -= 1;
+				}
+
+				indices[k] = other.indices[j];
+				elements[k] = element;
+				j -= 1;
+			}
+		}
+
+		size = mergedSize;
+	}
+
+	private void siftDown(int[] heap, int heapSize) {
+		int position = heap[0];
+
+		int parent = 0;
+		for (int child = 1; child < heapSize; child = (2 * parent) + 1) {
+			if (((child + 1) < heapSize) && isWorse(heap[child + 1], heap[child])) {
+				child += 1;
+			}
+			if (!isWorse(heap[child], position)) {
+				break;
+			}
+
+			heap[parent] = heap[child];
+			parent = child;
+		}
+
+		heap[parent] = position;
+	}
+
+	private void siftUp(int[] heap, int child) {
+		int position = heap[child];
+
+		while (child > 0) {
+			int parent = (child - 1) / 2;
+			if (!isWorse(position, heap[parent])) {
+				break;
+			}
+
+			heap[child] = heap[parent];
+			child = parent;
+		}
+
+		heap[child] = position;
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	/**
+	 * Cursor over the elements of a sparse array, in the order of their indices.
+	 * Unlike an iterator, a cursor can be repositioned and reused, and boxes neither the indices nor the elements.
+	 * <p>
+	 * Modifying the array while a cursor is in use leaves the position of the cursor unspecified.
+	 *
+	 * @since 2.1
+	 */
+	public static final class Cursor {
+
+		private final SparseDoubleArray array;
+
+		private int position = -1;
+
+
+		private Cursor(SparseDoubleArray array) {
+			this.array = array;
+		}
+
+
+		/**
+		 * Returns the index of the element this cursor is positioned at.
+		 *
+		 * @throws IllegalStateException if this cursor is not positioned at an element
+		 *
+		 * @since 2.1
+		 */
+		public int index() {
+			checkPositioned();
+
+			return array.indices[position];
+		}
+
+		/**
+		 * Advances this cursor to the next element.
+		 * Returns whether there is such an element.
+		 *
+		 * @since 2.1
+		 */
+		public boolean next() {
+			if (position < array.size) {
+				position += 1;
+			}
+
+			return (position < array.size);
+		}
+
+		/**
+		 * Positions this cursor before the first element.
+		 *
+		 * @since 2.1
+		 */
+		public void reset() {
+			position = -1;
+		}
+
+		/**
+		 * Positions this cursor at the first element at or after the given index.
+		 * Returns whether there is such an element.
+		 * <p>
+		 * When seeking forward, searches only the elements after the current one,
+		 * so that walking several arrays in step, for example when intersecting them, stays cheap.
+		 *
+		 * @throws IllegalArgumentException if {@code index} is negative
+		 *
+		 * @since 2.1
+		 */
+		public boolean seek(int index) {
+			Contract.checkArgument(index >= 0, "Index must not be negative: {0}", index);
+
+			int fromPosition = ((position >= 0) && (position < array.size) && (array.indices[position] <= index)) ? position : 0;
+			int internalIndex = Arrays.binarySearch(array.indices, fromPosition, array.size, index);
+			position = (internalIndex >= 0) ? internalIndex : -(internalIndex + 1);
+
+			return (position < array.size);
+		}
+
+		/**
+		 * Returns the element this cursor is positioned at.
+		 *
+		 * @throws IllegalStateException if this cursor is not positioned at an element
+		 *
+		 * @since 2.1
+		 */
+		public double value() {
+			checkPositioned();
+
+			return array.elements[position];
+		}
+
+
+		private void checkPositioned() {
+			Contract.checkState((position >= 0) && (position < array.size), "Cursor is not positioned at an element");
+		}
+
+	}
+
 }
@@ -0,0 +1,814 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection.concurrent;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.time.Clock;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.internal.collection.MapEntry;
+import org.sellcom.core.internal.collection.TimerWheel;
+import org.sellcom.core.internal.collection.concurrent.ExpiryReaper;
+import org.sellcom.core.internal.util.RemovalNotifier;
+import org.sellcom.core.util.CoarseClock;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalListener;
+
+/**
+ * Concurrent map of expiring elements.
+ * <p>
+ * Reads are lock-free and ignore expired entries.
+ * Writes lock one of several stripes, each with its own timer wheel, so that writes to different keys rarely contend.
+ * Expired entries are removed by a background thread shared by all maps.
+ * <p>
+ * Every write, including {@link #compute(Object, BiFunction)} and {@link #merge(Object, Object, BiFunction)}, resets the time to live of the written entry.
+ * The views are weakly consistent.
+ * Removed entries may be reported to a {@linkplain #setRemovalListener(RemovalListener, Executor) removal listener}.
+ * <p>
+ * Does not allow {@code null} keys or values.
+ *
+ * @since 2.1
+ */
+public class ConcurrentExpiringHashMap<K, V> implements ConcurrentMap<K, V> {
+
+	private static final long REAPING_PERIOD = 64L; // Milliseconds, the finest bucket span of the timer wheel
+
+	private volatile Clock clock = CoarseClock.getDefault();
+
+	private volatile RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
+
+	private final ConcurrentMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+
+	private final Stripe<K>[] stripes;
+
+	private final long timeToLive; // Milliseconds
+
+
+	/**
+	 * Creates a new map of expiring elements with the given time to live.
+	 * The number of stripes is derived from the number of available processors.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentExpiringHashMap(long timeToLive, TimeUnit unit) {
+		this(timeToLive, unit, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new map of expiring elements with the given time to live and the given estimated number of concurrently writing threads.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if {@code concurrencyLevel} is not positive or greater than 2^16
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public ConcurrentExpiringHashMap(long timeToLive, TimeUnit unit, int concurrencyLevel) {
+		Contract.checkArgument(timeToLive >= 0L, "Time to live must not be negative: {0}", timeToLive);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+		Contract.checkArgument((concurrencyLevel > 0) && (concurrencyLevel <= (1 << 16)), "Concurrency level must be between 1 and 65536: {0}", concurrencyLevel);
+
+		this.timeToLive = unit.toMillis(timeToLive);
+
+		// Rounds the concurrency level up to a power of two
+		int stripeCount = Integer.highestOneBit((concurrencyLevel << 1) - 1);
+
+		long now = clock.millis();
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>(now);
+		}
+
+		ExpiryReaper.register(this, ConcurrentExpiringHashMap::reap, REAPING_PERIOD, MILLISECONDS);
+	}
+
+
+	@Override
+	public void clear() {
+		try {
+			for (Stripe<K> stripe : stripes) {
+				stripe.lock.lock();
+			}
+
+			if (removalNotifier.isEnabled()) {
+				long now = clock.millis();
+				entries.forEach((key, node) -> removalNotifier.enqueue(key, node.value, node.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT));
+			}
+
+			entries.clear();
+			for (Stripe<K> stripe : stripes) {
+				stripe.expiryTimeline.clear();
+			}
+		} finally {
+			for (Stripe<K> stripe : stripes) {
+				stripe.lock.unlock();
+			}
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(remappingFunction != null, "Remapping function must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			Node<K, V> node = entries.get(key);
+			V oldValue = valueOf(node, now);
+
+			V newValue = remappingFunction.apply(key, oldValue);
+			if (newValue != null) {
+				_put(stripe, key, newValue, now);
+			} else if (node != null) {
+				_remove(stripe, node, now);
+			}
+
+			return newValue;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
+
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			value = valueOf(entries.get(key), now);
+			if (value != null) {
+				return value;
+			}
+
+			value = mappingFunction.apply(key);
+			if (value != null) {
+				_put(stripe, key, value, now);
+			}
+
+			return value;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(remappingFunction != null, "Remapping function must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			Node<K, V> node = entries.get(key);
+			V oldValue = valueOf(node, now);
+			if (oldValue == null) {
+				return null;
+			}
+
+			V newValue = remappingFunction.apply(key, oldValue);
+			if (newValue != null) {
+				_put(stripe, key, newValue, now);
+			} else {
+				_remove(stripe, node, now);
+			}
+
+			return newValue;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		return get(key) != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		long now = clock.millis();
+		for (Node<K, V> node : entries.values()) {
+			if (!node.isExpired(now) && node.value.equals(value)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		long now = clock.millis();
+		entries.forEach((key, node) -> {
+			if (!node.isExpired(now)) {
+				action.accept(key, node.value);
+			}
+		});
+	}
+
+	@Override
+	public V get(Object key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		return valueOf(entries.get(key), clock.millis());
+	}
+
+	/**
+	 * Checks whether this map is empty.
+	 * Entries which have expired but have not been removed by the background thread yet still count.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new KeySet();
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+		Contract.checkArgument(remappingFunction != null, "Remapping function must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			Node<K, V> node = entries.get(key);
+			V oldValue = valueOf(node, now);
+
+			V newValue = (oldValue != null) ? remappingFunction.apply(oldValue, value) : value;
+			if (newValue != null) {
+				_put(stripe, key, newValue, now);
+			} else {
+				_remove(stripe, node, now);
+			}
+
+			return newValue;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			return _put(stripe, key, value, clock.millis());
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Contract.checkArgument(map != null, "Map must not be null");
+
+		map.forEach(this::put);
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			V oldValue = valueOf(entries.get(key), now);
+			if (oldValue == null) {
+				_put(stripe, key, value, now);
+			}
+
+			return oldValue;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			Node<K, V> node = entries.get(key);
+			if (node == null) {
+				return null;
+			}
+
+			long now = clock.millis();
+			_remove(stripe, node, now);
+
+			return valueOf(node, now);
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		if (value == null) {
+			return false;
+		}
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			Node<K, V> node = entries.get(key);
+			if (!value.equals(valueOf(node, now))) {
+				return false;
+			}
+
+			_remove(stripe, node, now);
+
+			return true;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			V oldValue = valueOf(entries.get(key), now);
+			if (oldValue != null) {
+				_put(stripe, key, value, now);
+			}
+
+			return oldValue;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(oldValue != null, "Old value must not be null");
+		Contract.checkArgument(newValue != null, "New value must not be null");
+
+		Stripe<K> stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			long now = clock.millis();
+			if (!oldValue.equals(valueOf(entries.get(key), now))) {
+				return false;
+			}
+
+			_put(stripe, key, newValue, now);
+
+			return true;
+		} finally {
+			stripe.lock.unlock();
+			removalNotifier.dispatch();
+		}
+	}
+
+	/**
+	 * Sets the clock determining when the entries of this map expire, the {@linkplain CoarseClock#getDefault() default coarse clock} unless set otherwise.
+	 * The deadlines already set are kept.
+	 *
+	 * @throws IllegalArgumentException if {@code clock} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setClock(Clock clock) {
+		Contract.checkArgument(clock != null, "Clock must not be null");
+
+		this.clock = clock;
+
+		// The time of the wheels cannot move backwards, so the wheels have to be rebuilt
+		long now = clock.millis();
+		for (Stripe<K> stripe : stripes) {
+			try {
+				stripe.lock.lock();
+
+				if (now < stripe.expiryTimeline.getCurrentTime()) {
+					stripe.expiryTimeline = new TimerWheel<>(now);
+					for (Node<K, V> node : entries.values()) {
+						if (stripeFor(node.getValue()) == stripe) {
+							stripe.expiryTimeline.schedule(node);
+						}
+					}
+				}
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Starts notifying the given listener of the entries removed from this map.
+	 * Notifications are delivered in batches on the given executor, never while a stripe of this map is locked.
+	 * Replaces the previously set listener, if any.
+	 *
+	 * @throws IllegalArgumentException if {@code listener} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+		RemovalNotifier<K, V> notifier = new RemovalNotifier<>(listener, executor);
+
+		// Swapped under all stripe locks, so that nothing is enqueued to the previous notifier once it has been dispatched below
+		RemovalNotifier<K, V> previousNotifier;
+		try {
+			for (Stripe<K> stripe : stripes) {
+				stripe.lock.lock();
+			}
+
+			previousNotifier = removalNotifier;
+			removalNotifier = notifier;
+		} finally {
+			for (Stripe<K> stripe : stripes) {
+				stripe.lock.unlock();
+			}
+		}
+
+		// Delivers the notifications left over by the previous listener
+		previousNotifier.dispatch();
+	}
+
+	/**
+	 * Returns the number of entries in this map.
+	 * May include entries which have expired but have not been removed by the background thread yet,
+	 * which happens within two reaping periods (128 ms) of their expiry.
+	 */
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public Collection<V> values() {
+		return new Values();
+	}
+
+
+	private V _put(Stripe<K> stripe, K key, V value, long now) {
+		Node<K, V> node = new Node<>(key, value, deadline(now));
+
+		Node<K, V> previousNode = entries.put(key, node);
+		if (previousNode != null) {
+			stripe.expiryTimeline.deschedule(previousNode);
+			removalNotifier.enqueue(key, previousNode.value, previousNode.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.REPLACED);
+		}
+
+		stripe.expiryTimeline.schedule(node);
+
+		return valueOf(previousNode, now);
+	}
+
+	private void _remove(Stripe<K> stripe, Node<K, V> node, long now) {
+		entries.remove(node.getValue(), node);
+		stripe.expiryTimeline.deschedule(node);
+		removalNotifier.enqueue(node.getValue(), node.value, node.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT);
+	}
+
+	private long deadline(long now) {
+		return (timeToLive > (Long.MAX_VALUE - now)) ? Long.MAX_VALUE : (now + timeToLive);
+	}
+
+	private Stripe<K> stripeFor(Object key) {
+		int hash = key.hashCode();
+
+		// Spreads the higher bits downwards, since only the lowest bits select the stripe
+		hash ^= (hash >>> 16);
+		hash ^= (hash >>> 8);
+
+		return stripes[hash & (stripes.length - 1)];
+	}
+
+	private V valueOf(Node<K, V> node, long now) {
+		return ((node != null) && !node.isExpired(now)) ? node.value : null;
+	}
+
+	// Called periodically on the shared reaper thread
+	@SuppressWarnings("unchecked")
+	void reap() {
+		long now = clock.millis();
+		for (Stripe<K> stripe : stripes) {
+			try {
+				stripe.lock.lock();
+
+				stripe.expiryTimeline.advance(now, timer -> {
+					if (entries.remove(timer.getValue(), timer)) {
+						removalNotifier.enqueue(timer.getValue(), ((Node<K, V>) timer).value, RemovalCause.EXPIRED);
+					}
+				});
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public void clear() {
+			ConcurrentExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+
+			return (key != null) && (value != null) && value.equals(get(key));
+		}
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new NodeIterator<>(node -> new MapEntry<>(node.getValue(), node.value));
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+			Object key = entry.getKey();
+
+			return (key != null) && ConcurrentExpiringHashMap.this.remove(key, entry.getValue());
+		}
+
+		@Override
+		public int size() {
+			return ConcurrentExpiringHashMap.this.size();
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class KeySet extends AbstractSet<K> {
+
+		@Override
+		public void clear() {
+			ConcurrentExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return (object != null) && containsKey(object);
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			return new NodeIterator<>(Node::getValue);
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			return (object != null) && (ConcurrentExpiringHashMap.this.remove(object) != null);
+		}
+
+		@Override
+		public int size() {
+			return ConcurrentExpiringHashMap.this.size();
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Node<K, V> extends TimerWheel.Timer<K> {
+
+		private final V value;
+
+
+		private Node(K key, V value, long deadline) {
+			super(key, deadline);
+
+			this.value = value;
+		}
+
+
+		private boolean isExpired(long now) {
+			return getDeadline() < now;
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class NodeIterator<E> implements Iterator<E> {
+
+		private final Function<Node<K, V>, E> extractor;
+
+		private final Iterator<Node<K, V>> iterator = entries.values().iterator();
+
+		private Node<K, V> lastNode;
+
+		private Node<K, V> nextNode;
+
+
+		private NodeIterator(Function<Node<K, V>, E> extractor) {
+			this.extractor = extractor;
+
+			advance();
+		}
+
+
+		@Override
+		public boolean hasNext() {
+			return nextNode != null;
+		}
+
+		@Override
+		public E next() {
+			if (nextNode == null) {
+				throw new NoSuchElementException();
+			}
+
+			lastNode = nextNode;
+			advance();
+
+			return extractor.apply(lastNode);
+		}
+
+		@Override
+		public void remove() {
+			if (lastNode == null) {
+				throw new IllegalStateException();
+			}
+
+			ConcurrentExpiringHashMap.this.remove(lastNode.getValue(), lastNode.value);
+			lastNode = null;
+		}
+
+
+		private void advance() {
+			long now = clock.millis();
+
+			nextNode = null;
+			while (iterator.hasNext()) {
+				Node<K, V> node = iterator.next();
+				if (!node.isExpired(now)) {
+					nextNode = node;
+					break;
+				}
+			}
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Stripe<K> {
+
+		private TimerWheel<K> expiryTimeline;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+
+		private Stripe(long currentTime) {
+			expiryTimeline = new TimerWheel<>(currentTime);
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class Values extends AbstractCollection<V> {
+
+		@Override
+		public void clear() {
+			ConcurrentExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return (object != null) && containsValue(object);
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new NodeIterator<>(node -> node.value);
+		}
+
+		@Override
+		public int size() {
+			return ConcurrentExpiringHashMap.this.size();
+		}
+
+	}
+
+}
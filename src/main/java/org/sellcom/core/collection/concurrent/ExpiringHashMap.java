@@ -15,35 +15,59 @@
  */
 package org.sellcom.core.collection.concurrent;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
 import java.time.Clock;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.sellcom.core.Contract;
 import org.sellcom.core.internal.collection.MapEntry;
+import org.sellcom.core.internal.collection.TimerWheel;
+import org.sellcom.core.internal.util.RemovalNotifier;
+import org.sellcom.core.util.CoarseClock;
+import org.sellcom.core.util.ExpiryPolicy;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalListener;
 
 /**
  * Concurrent {@code HashMap} of expiring elements.
  * <p>
+ * Expired entries are removed in bulk by a hierarchical timer wheel, which is advanced as a side effect of the map operations
+ * at a cost independent of the number of entries. Until then, the map operations treat them as absent.
+ * <p>
+ * Each entry may have its own time to live, and entries may expire either after write or after access (sliding expiry).
+ * Removed entries may be reported to a {@linkplain #setRemovalListener(RemovalListener, Executor) removal listener}.
+ * <p>
+ * The views are live and weakly consistent. They skip expired entries, and iterating them neither locks nor copies this map.
+ * <p>
  * Does not allow {@code null} keys or values.
  *
  * @since 1.0
  */
 public class ExpiringHashMap<K, V> implements Map<K, V> {
 
-	private Clock clock = Clock.systemUTC();
+	private volatile Clock clock = CoarseClock.getDefault();
+
+	private volatile RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
+
+	private final ExpiryPolicy expiryPolicy;
 
-	private final Map<K, V> entries = new HashMap<>();
+	private final ConcurrentMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
 
-	private final Queue<SimpleExpiringObject<K>> expiryTimeline = new PriorityQueue<>();
+	private TimerWheel<K> expiryTimeline;
+
+	private long maintenanceTime;
+
+	private long settlementTime = Long.MIN_VALUE;
 
 	private final long timeToLive; // Milliseconds
 
@@ -57,18 +81,46 @@
 	 * @since 1.0
 	 */
 	public ExpiringHashMap(long timeToLive, TimeUnit unit) {
+		this(timeToLive, unit, ExpiryPolicy.EXPIRE_AFTER_WRITE);
+	}
+
+	/**
+	 * Creates a new map of expiring elements with the given default time to live and the given expiry policy.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if {@code expiryPolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ExpiringHashMap(long timeToLive, TimeUnit unit, ExpiryPolicy expiryPolicy) {
 		Contract.checkArgument(timeToLive >= 0L, "Time to live must not be negative: {0}", timeToLive);
 		Contract.checkArgument(unit != null, "Unit must not be null");
+		Contract.checkArgument(expiryPolicy != null, "Expiry policy must not be null");
 
 		this.timeToLive = unit.toMillis(timeToLive);
+		this.expiryPolicy = expiryPolicy;
+
+		maintenanceTime = clock.millis();
+		expiryTimeline = new TimerWheel<>(maintenanceTime);
 	}
 
 
 	@Override
 	public void clear() {
-		synchronized (expiryTimeline) {
-			entries.clear();
-			expiryTimeline.clear();
+		try {
+			synchronized (entries) {
+				cleanUp();
+
+				if (removalNotifier.isEnabled()) {
+					entries.forEach((key, node) -> removalNotifier.enqueue(key, node.value, node.isExpired(maintenanceTime) ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT));
+				}
+
+				entries.clear();
+				expiryTimeline.clear();
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
@@ -76,10 +128,14 @@ public void clear() {
 	public boolean containsKey(Object key) {
 		Contract.checkArgument(key != null, "Key must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
 
-			return entries.containsKey(key);
+				return getNode(key) != null;
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
@@ -87,54 +143,69 @@ public boolean containsKey(Object key) {
 	public boolean containsValue(Object value) {
 		Contract.checkArgument(value != null, "Value must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
+
+				for (Node<K, V> node : entries.values()) {
+					if (!node.isExpired(maintenanceTime) && node.value.equals(value)) {
+						return true;
+					}
+				}
 
-			return entries.containsValue(value);
+				return false;
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
 	@Override
 	public Set<Map.Entry<K, V>> entrySet() {
-		synchronized (expiryTimeline) {
-			cleanUp();
-
-			Set<Map.Entry<K, V>> entrySet = new HashSet<>(entries.size());
-			entries.forEach((key, value) -> {
-				entrySet.add(new MapEntry<>(key, value));
-			});
-
-			return entrySet;
-		}
+		return new EntrySet();
 	}
 
 	@Override
 	public V get(Object key) {
 		Contract.checkArgument(key != null, "Key must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
 
-			return entries.get(key);
+				Node<K, V> node = getNode(key);
+				if (node == null) {
+					return null;
+				}
+
+				if (expiryPolicy == ExpiryPolicy.EXPIRE_AFTER_ACCESS) {
+					// Postponing the deadline does not require rescheduling the timer
+					node.setDeadline(Math.max(node.getDeadline(), deadline(maintenanceTime, node.timeToLive)));
+				}
+
+				return node.value;
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
 	@Override
 	public boolean isEmpty() {
-		synchronized (expiryTimeline) {
-			cleanUp();
-
-			return entries.isEmpty();
+		try {
+			synchronized (entries) {
+				settle();
+
+				return entries.isEmpty();
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
 	@Override
 	public Set<K> keySet() {
-		synchronized (expiryTimeline) {
-			cleanUp();
-
-			return new HashSet<>(entries.keySet());
-		}
+		return new KeySet();
 	}
 
 	@Override
@@ -142,10 +213,41 @@ public V put(K key, V value) {
 		Contract.checkArgument(key != null, "Key must not be null");
 		Contract.checkArgument(value != null, "Value must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
+
+				return _put(key, value, timeToLive);
+			}
+		} finally {
+			removalNotifier.dispatch();
+		}
+	}
+
+	/**
+	 * Associates the given value with the given key in this map, with the given time to live instead of the default one.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws IllegalArgumentException if {@code value} is {@code null}
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public V put(K key, V value, long timeToLive, TimeUnit unit) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+		Contract.checkArgument(timeToLive >= 0L, "Time to live must not be negative: {0}", timeToLive);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+
+		try {
+			synchronized (entries) {
+				cleanUp();
 
-			return _put(key, value);
+				return _put(key, value, unit.toMillis(timeToLive));
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
@@ -153,10 +255,14 @@ public V put(K key, V value) {
 	public void putAll(Map<? extends K, ? extends V> map) {
 		Contract.checkArgument(map != null, "Map must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
 
-			map.forEach(this::_put);
+				map.forEach((key, value) -> _put(key, value, timeToLive));
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
@@ -164,61 +270,456 @@ public void putAll(Map<? extends K, ? extends V> map) {
 	public V remove(Object key) {
 		Contract.checkArgument(key != null, "Key must not be null");
 
-		synchronized (expiryTimeline) {
-			cleanUp();
+		try {
+			synchronized (entries) {
+				cleanUp();
+
+				return _remove(key);
+			}
+		} finally {
+			removalNotifier.dispatch();
+		}
+	}
+
+	/**
+	 * Sets the clock determining when the entries of this map expire, the {@linkplain CoarseClock#getDefault() default coarse clock} unless set otherwise.
+	 * The deadlines already set are kept.
+	 *
+	 * @throws IllegalArgumentException if {@code clock} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setClock(Clock clock) {
+		Contract.checkArgument(clock != null, "Clock must not be null");
+
+		synchronized (entries) {
+			this.clock = clock;
+
+			// The time of the wheel cannot move backwards, so the wheel has to be rebuilt
+			long now = clock.millis();
+			if (now < expiryTimeline.getCurrentTime()) {
+				maintenanceTime = now;
+				settlementTime = Long.MIN_VALUE;
+				expiryTimeline = new TimerWheel<>(now);
+				entries.values().forEach(expiryTimeline::schedule);
+			}
+		}
+	}
 
-			return _remove(key);
+	/**
+	 * Starts notifying the given listener of the entries removed from this map.
+	 * Notifications are delivered in batches on the given executor, never while this map is locked.
+	 * Replaces the previously set listener, if any.
+	 *
+	 * @throws IllegalArgumentException if {@code listener} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+		RemovalNotifier<K, V> notifier = new RemovalNotifier<>(listener, executor);
+
+		// Swapped under the lock, so that nothing is enqueued to the previous notifier once it has been dispatched below
+		RemovalNotifier<K, V> previousNotifier;
+		synchronized (entries) {
+			previousNotifier = removalNotifier;
+			removalNotifier = notifier;
 		}
+
+		// Delivers the notifications left over by the previous listener
+		previousNotifier.dispatch();
 	}
 
 	@Override
 	public int size() {
-		synchronized (expiryTimeline) {
-			cleanUp();
-
-			return entries.size();
+		try {
+			synchronized (entries) {
+				settle();
+
+				return entries.size();
+			}
+		} finally {
+			removalNotifier.dispatch();
 		}
 	}
 
 	@Override
 	public Collection<V> values() {
-		synchronized (expiryTimeline) {
-			cleanUp();
+		return new Values();
+	}
 
-			return new HashSet<>(entries.values());
+
+	private V _put(K key, V value, long timeToLive) {
+		Node<K, V> node = new Node<>(key, value, timeToLive, deadline(maintenanceTime, timeToLive));
+
+		Node<K, V> previousNode = entries.put(key, node);
+		expiryTimeline.schedule(node);
+		if (previousNode == null) {
+			return null;
 		}
-	}
 
+		expiryTimeline.deschedule(previousNode);
+		if (previousNode.isExpired(maintenanceTime)) {
+			removalNotifier.enqueue(key, previousNode.value, RemovalCause.EXPIRED);
 
-	private V _put(K key, V value) {
-		V previousValue = entries.put(key, value);
+			return null;
+		}
 
-		expiryTimeline.remove(key);
-		expiryTimeline.add(new SimpleExpiringObject<>(key, timeToLive, MILLISECONDS, clock));
+		removalNotifier.enqueue(key, previousNode.value, RemovalCause.REPLACED);
 
-		return previousValue;
+		return previousNode.value;
 	}
 
 	private V _remove(Object key) {
-		V previousValue = entries.remove(key);
+		Node<K, V> previousNode = entries.remove(key);
+		if (previousNode == null) {
+			return null;
+		}
+
+		expiryTimeline.deschedule(previousNode);
+		if (previousNode.isExpired(maintenanceTime)) {
+			removalNotifier.enqueue(previousNode.getValue(), previousNode.value, RemovalCause.EXPIRED);
+
+			return null;
+		}
+
+		removalNotifier.enqueue(previousNode.getValue(), previousNode.value, RemovalCause.EXPLICIT);
+
+		return previousNode.value;
+	}
+
+	private boolean _remove(Node<K, V> node) {
+		try {
+			synchronized (entries) {
+				if (!entries.remove(node.getValue(), node)) {
+					return false;
+				}
 
-		expiryTimeline.remove(key);
+				expiryTimeline.deschedule(node);
+				removalNotifier.enqueue(node.getValue(), node.value, RemovalCause.EXPLICIT);
 
-		return previousValue;
+				return true;
+			}
+		} finally {
+			removalNotifier.dispatch();
+		}
+	}
+
+	private Node<K, V> _replace(Node<K, V> node, V value) {
+		try {
+			synchronized (entries) {
+				cleanUp();
+
+				if (node.isExpired(maintenanceTime)) {
+					return null;
+				}
+
+				Node<K, V> newNode = new Node<>(node.getValue(), value, node.timeToLive, deadline(maintenanceTime, node.timeToLive));
+				if (!entries.replace(node.getValue(), node, newNode)) {
+					return null;
+				}
+
+				expiryTimeline.deschedule(node);
+				expiryTimeline.schedule(newNode);
+				removalNotifier.enqueue(node.getValue(), node.value, RemovalCause.REPLACED);
+
+				return newNode;
+			}
+		} finally {
+			removalNotifier.dispatch();
+		}
 	}
 
 	private void cleanUp() {
-		while (!expiryTimeline.isEmpty() && expiryTimeline.peek().isExpired()) {
-			entries.remove(expiryTimeline.poll().getValue());
+		long now = clock.millis();
+		if (now == maintenanceTime) { // Already cleaned up
+			return;
 		}
+
+		maintenanceTime = now;
+
+		// Entries expired since the last processed bucket are left to the next one, reads check their deadline and size() settles them
+		expiryTimeline.advance(now, this::expire);
 	}
 
-	// Intended for testing only
-	void setClock(Clock clock) {
-		Contract.checkArgument(clock != null, "Clock must not be null");
+	private static long deadline(long now, long timeToLive) {
+		return (timeToLive > (Long.MAX_VALUE - now)) ? Long.MAX_VALUE : (now + timeToLive);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void expire(TimerWheel.Timer<K> timer) {
+		if (entries.remove(timer.getValue(), timer)) {
+			removalNotifier.enqueue(timer.getValue(), ((Node<K, V>) timer).value, RemovalCause.EXPIRED);
+		}
+	}
+
+	private Node<K, V> getNode(Object key) {
+		Node<K, V> node = entries.get(key);
+		if ((node != null) && node.isExpired(maintenanceTime)) {
+			expiryTimeline.deschedule(node);
+			expire(node);
+
+			return null;
+		}
+
+		return node;
+	}
+
+	private void settle() {
+		cleanUp();
+
+		// Only the finest bucket of the wheel may still hold expired entries, and it is settled at most once per millisecond
+		if (settlementTime != maintenanceTime) {
+			settlementTime = maintenanceTime;
+
+			expiryTimeline.expireOverdue(this::expire);
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public void clear() {
+			ExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+			if ((key == null) || (value == null)) {
+				return false;
+			}
+
+			// Not an access, so the deadline is left alone
+			Node<K, V> node = entries.get(key);
+
+			return (node != null) && !node.isExpired(clock.millis()) && value.equals(node.value);
+		}
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new NodeIterator<>(WriteThroughEntry::new);
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+			if ((key == null) || (value == null)) {
+				return false;
+			}
+
+			Node<K, V> node = entries.get(key);
+			if ((node == null) || node.isExpired(clock.millis()) || !value.equals(node.value)) {
+				return false;
+			}
+
+			return _remove(node);
+		}
+
+		@Override
+		public int size() {
+			return ExpiringHashMap.this.size();
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class KeySet extends AbstractSet<K> {
+
+		@Override
+		public void clear() {
+			ExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return (object != null) && containsKey(object);
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			return new NodeIterator<>(Node::getValue);
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			return (object != null) && (ExpiringHashMap.this.remove(object) != null);
+		}
+
+		@Override
+		public int size() {
+			return ExpiringHashMap.this.size();
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Node<K, V> extends TimerWheel.Timer<K> {
+
+		private final long timeToLive; // Milliseconds
+
+		private final V value;
+
+
+		private Node(K key, V value, long timeToLive, long deadline) {
+			super(key, deadline);
+
+			this.timeToLive = timeToLive;
+			this.value = value;
+		}
+
+
+		private boolean isExpired(long now) {
+			return getDeadline() < now;
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class NodeIterator<E> implements Iterator<E> {
+
+		private final Function<Node<K, V>, E> extractor;
+
+		private final Iterator<Node<K, V>> iterator = entries.values().iterator();
+
+		private Node<K, V> lastNode;
+
+		private Node<K, V> nextNode;
+
+
+		private NodeIterator(Function<Node<K, V>, E> extractor) {
+			this.extractor = extractor;
+
+			advance();
+		}
+
+
+		@Override
+		public boolean hasNext() {
+			return nextNode != null;
+		}
+
+		@Override
+		public E next() {
+			if (nextNode == null) {
+				throw new NoSuchElementException();
+			}
+
+			lastNode = nextNode;
+			advance();
+
+			return extractor.apply(lastNode);
+		}
+
+		@Override
+		public void remove() {
+			if (lastNode == null) {
+				throw new IllegalStateException();
+			}
+
+			_remove(lastNode);
+			lastNode = null;
+		}
+
+
+		private void advance() {
+			long now = clock.millis();
+
+			nextNode = null;
+			while (iterator.hasNext()) {
+				Node<K, V> node = iterator.next();
+				if (!node.isExpired(now)) {
+					nextNode = node;
+					break;
+				}
+			}
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class Values extends AbstractCollection<V> {
+
+		@Override
+		public void clear() {
+			ExpiringHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return (object != null) && containsValue(object);
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return new NodeIterator<>(node -> node.value);
+		}
+
+		@Override
+		public int size() {
+			return ExpiringHashMap.this.size();
+		}
+
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private class WriteThroughEntry extends MapEntry<K, V> {
+
+		private Node<K, V> node;
+
+
+		private WriteThroughEntry(Node<K, V> node) {
+			super(node.getValue(), node.value);
+
+			this.node = node;
+		}
+
+
+		/**
+		 * Replaces the value of this entry, and writes it through to the map unless the entry has been removed, replaced or has expired since.
+		 */
+		@Override
+		public V setValue(V value) {
+			Contract.checkArgument(value != null, "Value must not be null");
+
+			if (node != null) {
+				node = _replace(node, value);
+			}
+
+			return super.setValue(value);
+		}
 
-		this.clock = clock;
-		expiryTimeline.forEach(expiringObject -> expiringObject.setClock(clock));
 	}
 
 }
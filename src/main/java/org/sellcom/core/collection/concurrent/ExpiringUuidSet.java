@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection.concurrent;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.CoarseClock;
+
+/**
+ * Compact concurrent set of expiring UUIDs, intended for deduplication.
+ * <p>
+ * UUIDs are stored as pairs of {@code long}s in parallel arrays using open addressing with linear probing,
+ * together with their expiry time, so that each entry takes 24 bytes (divided by the load factor), and adding a UUID allocates nothing.
+ * Expired and removed UUIDs are purged when the table is rehashed.
+ *
+ * @since 2.1
+ */
+public class ExpiringUuidSet {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private static final long REMOVED = Long.MIN_VALUE + 1L; // Earlier than any current time
+
+	private Clock clock = CoarseClock.getDefault();
+
+	private long[] expiries;
+
+	private long[] leastSignificantBits;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private long[] mostSignificantBits;
+
+	private int occupiedSlotCount; // Including expired and removed UUIDs
+
+	private final long timeToLive; // Milliseconds
+
+
+	/**
+	 * Creates a new set of UUIDs expiring after the given time.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ExpiringUuidSet(long timeToLive, TimeUnit unit) {
+		this(timeToLive, unit, MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Creates a new set of UUIDs expiring after the given time, able to hold the given number of UUIDs without rehashing.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if {@code expectedSize} is negative or greater than 2^29
+	 *
+	 * @since 2.1
+	 */
+	public ExpiringUuidSet(long timeToLive, TimeUnit unit, int expectedSize) {
+		Contract.checkArgument(timeToLive >= 0L, "Time to live must not be negative: {0}", timeToLive);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+		Contract.checkArgument((expectedSize >= 0) && (expectedSize <= (1 << 29)), "Expected size must be between 0 and 2^29: {0}", expectedSize);
+
+		this.timeToLive = unit.toMillis(timeToLive);
+
+		allocate(capacityFor(expectedSize));
+	}
+
+
+	/**
+	 * Adds the UUID consisting of the given bits to this set, unless already present.
+	 * The expiry of a present UUID is not extended.
+	 * Returns {@code true} if the UUID was not present.
+	 *
+	 * @since 2.1
+	 */
+	public boolean add(long mostSignificantBits, long leastSignificantBits) {
+		try {
+			lock.lock();
+
+			long now = clock.millis();
+
+			int reusableSlot = -1;
+			int mask = expiries.length - 1;
+			for (int slot = hash(mostSignificantBits, leastSignificantBits) & mask; expiries[slot] != EMPTY; slot = (slot + 1) & mask) {
+				if (expiries[slot] < now) { // Expired or removed, may be reused unless the UUID is present further on
+					if (reusableSlot < 0) {
+						reusableSlot = slot;
+					}
+				} else if ((this.mostSignificantBits[slot] == mostSignificantBits) && (this.leastSignificantBits[slot] == leastSignificantBits)) {
+					return false;
+				}
+			}
+
+			if (reusableSlot < 0) {
+				if (occupiedSlotCount >= maximumOccupiedSlotCount()) {
+					rehash(now);
+				}
+
+				reusableSlot = findEmptySlot(mostSignificantBits, leastSignificantBits);
+				occupiedSlotCount += 1;
+			}
+
+			this.mostSignificantBits[reusableSlot] = mostSignificantBits;
+			this.leastSignificantBits[reusableSlot] = leastSignificantBits;
+			expiries[reusableSlot] = (timeToLive > (Long.MAX_VALUE - now)) ? Long.MAX_VALUE : (now + timeToLive);
+
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given UUID to this set, unless already present.
+	 * The expiry of a present UUID is not extended.
+	 * Returns {@code true} if the UUID was not present.
+	 *
+	 * @throws IllegalArgumentException if {@code uuid} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public boolean add(UUID uuid) {
+		Contract.checkArgument(uuid != null, "UUID must not be null");
+
+		return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * Removes all UUIDs from this set.
+	 *
+	 * @since 2.1
+	 */
+	public void clear() {
+		try {
+			lock.lock();
+
+			Arrays.fill(expiries, EMPTY);
+			occupiedSlotCount = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether this set contains the UUID consisting of the given bits.
+	 *
+	 * @since 2.1
+	 */
+	public boolean contains(long mostSignificantBits, long leastSignificantBits) {
+		try {
+			lock.lock();
+
+			return findLiveSlot(mostSignificantBits, leastSignificantBits, clock.millis()) >= 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether this set contains the given UUID.
+	 *
+	 * @throws IllegalArgumentException if {@code uuid} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public boolean contains(UUID uuid) {
+		Contract.checkArgument(uuid != null, "UUID must not be null");
+
+		return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * Checks whether this set contains no UUIDs.
+	 *
+	 * @since 2.1
+	 */
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	/**
+	 * Removes the UUID consisting of the given bits from this set.
+	 * Returns {@code true} if the UUID was present.
+	 *
+	 * @since 2.1
+	 */
+	public boolean remove(long mostSignificantBits, long leastSignificantBits) {
+		try {
+			lock.lock();
+
+			int slot = findLiveSlot(mostSignificantBits, leastSignificantBits, clock.millis());
+			if (slot < 0) {
+				return false;
+			}
+
+			// The slot must stay occupied, so that the probing of other UUIDs does not stop at it
+			expiries[slot] = REMOVED;
+
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the given UUID from this set.
+	 * Returns {@code true} if the UUID was present.
+	 *
+	 * @throws IllegalArgumentException if {@code uuid} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public boolean remove(UUID uuid) {
+		Contract.checkArgument(uuid != null, "UUID must not be null");
+
+		return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * Sets the clock determining when the UUIDs in this set expire, the {@linkplain CoarseClock#getDefault() default coarse clock} unless set otherwise.
+	 * The deadlines already set are kept.
+	 *
+	 * @throws IllegalArgumentException if {@code clock} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setClock(Clock clock) {
+		Contract.checkArgument(clock != null, "Clock must not be null");
+
+		try {
+			lock.lock();
+
+			this.clock = clock;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of UUIDs in this set which have not expired.
+	 * Costs O(n).
+	 *
+	 * @since 2.1
+	 */
+	public int size() {
+		try {
+			lock.lock();
+
+			long now = clock.millis();
+
+			int size = 0;
+			for (long expiry : expiries) {
+				if (expiry >= now) {
+					size += 1;
+				}
+			}
+
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	private void allocate(int capacity) {
+		mostSignificantBits = new long[capacity];
+		leastSignificantBits = new long[capacity];
+		expiries = new long[capacity];
+		Arrays.fill(expiries, EMPTY);
+		occupiedSlotCount = 0;
+	}
+
+	private static int capacityFor(int size) {
+		// Keeps the load factor at most 3/4
+		int minimumCapacity = Math.max(MINIMUM_CAPACITY, size + (size / 3) + 1);
+
+		return Integer.highestOneBit((minimumCapacity << 1) - 1);
+	}
+
+	private int findEmptySlot(long mostSignificantBits, long leastSignificantBits) {
+		int mask = expiries.length - 1;
+
+		int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+		while (expiries[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private int findLiveSlot(long mostSignificantBits, long leastSignificantBits, long now) {
+		int mask = expiries.length - 1;
+		for (int slot = hash(mostSignificantBits, leastSignificantBits) & mask; expiries[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if ((expiries[slot] >= now)
+					&& (this.mostSignificantBits[slot] == mostSignificantBits)
+					&& (this.leastSignificantBits[slot] == leastSignificantBits)) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int hash(long mostSignificantBits, long leastSignificantBits) {
+		// Finalizer of the 64-bit MurmurHash3, so that non-random UUIDs are spread as well
+		long hash = mostSignificantBits ^ (leastSignificantBits * 0x9E3779B97F4A7C15L);
+		hash ^= (hash >>> 33);
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= (hash >>> 33);
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= (hash >>> 33);
+
+		return (int) hash;
+	}
+
+	private int maximumOccupiedSlotCount() {
+		return (expiries.length >>> 2) * 3;
+	}
+
+	private void rehash(long now) {
+		long[] oldMostSignificantBits = mostSignificantBits;
+		long[] oldLeastSignificantBits = leastSignificantBits;
+		long[] oldExpiries = expiries;
+
+		int liveCount = 0;
+		for (long expiry : oldExpiries) {
+			if (expiry >= now) {
+				liveCount += 1;
+			}
+		}
+
+		// Grows only if the live UUIDs alone would fill more than half of the table, otherwise just purges the dead ones
+		allocate(Math.max(oldExpiries.length, capacityFor(liveCount << 1)));
+
+		for (int i = 0; i < oldExpiries.length; i++) {
+			if (oldExpiries[i] >= now) {
+				int slot = findEmptySlot(oldMostSignificantBits[i], oldLeastSignificantBits[i]);
+				mostSignificantBits[slot] = oldMostSignificantBits[i];
+				leastSignificantBits[slot] = oldLeastSignificantBits[i];
+				expiries[slot] = oldExpiries[i];
+				occupiedSlotCount += 1;
+			}
+		}
+	}
+
+	// Intended for testing only
+	int getCapacity() {
+		return expiries.length;
+	}
+
+}
@@ -20,6 +20,7 @@
 import java.util.concurrent.TimeUnit;
 
 import org.sellcom.core.Contract;
+import org.sellcom.core.util.CoarseClock;
 
 /**
  * Simple expiring object.
@@ -45,7 +46,7 @@
 	 * @since 1.0
 	 */
 	public SimpleExpiringObject(T value, long expiry, TimeUnit unit) {
-		this(value, expiry, unit, Clock.systemUTC());
+		this(value, expiry, unit, CoarseClock.getDefault());
 	}
 
 	SimpleExpiringObject(T value, long expiry, TimeUnit unit, Clock clock) {
@@ -16,6 +16,7 @@
 package org.sellcom.core.internal.collection;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class MapEntry<K, V> implements Map.Entry<K, V> {
 
@@ -30,6 +31,21 @@ public MapEntry(K key, V value) {
 	}
 
 
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+
+		if (other instanceof Map.Entry) {
+			Map.Entry<?, ?> otherEntry = (Map.Entry<?, ?>) other;
+
+			return Objects.equals(key, otherEntry.getKey()) && Objects.equals(value, otherEntry.getValue());
+		}
+
+		return false;
+	}
+
 	@Override
 	public K getKey() {
 		return key;
@@ -40,6 +56,11 @@ public V getValue() {
 		return value;
 	}
 
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(key) ^ Objects.hashCode(value);
+	}
+
 	@Override
 	public V setValue(V value) {
 		V originalValue = this.value;
@@ -48,4 +69,9 @@ public V setValue(V value) {
 		return originalValue;
 	}
 
+	@Override
+	public String toString() {
+		return key + "=" + value;
+	}
+
 }
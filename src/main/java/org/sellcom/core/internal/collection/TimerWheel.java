@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.collection;
+
+import java.util.function.Consumer;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Hierarchical timer wheel with millisecond deadlines.
+ * A timer expires once the time has moved past its deadline.
+ * <p>
+ * Timers are kept in buckets of exponentially coarser granularity depending on how far in the future they expire,
+ * and cascade towards finer buckets as the time advances.
+ * Scheduling and descheduling a timer costs O(1); advancing the time costs O(1) amortized per expired or cascaded timer.
+ * Expired timers are reported no later than one finest bucket span (64 ms) after their deadline,
+ * or exactly using {@link #expireOverdue(Consumer)}, which is meant for occasional rather than per-operation use.
+ * <p>
+ * Deadlines may be extended without rescheduling the timer:
+ * timers whose deadline has not passed yet when their bucket is processed are simply rescheduled.
+ * <p>
+ * Not thread-safe.
+ */
+public class TimerWheel<T> {
+
+	private static final int[] BUCKET_COUNTS = { 64, 64, 64, 64, 1 };
+
+	private static final int[] SHIFTS = { 6, 12, 18, 24, 30 }; // 64 ms, 4.1 s, 4.4 min, 4.7 h, 12.4 days
+
+	private static final long[] SPANS = { 1L << 6, 1L << 12, 1L << 18, 1L << 24, 1L << 30, Long.MAX_VALUE };
+
+	private long currentTime;
+
+	private int size;
+
+	private final Timer<T>[][] wheel;
+
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public TimerWheel(long currentTime) {
+		this.currentTime = currentTime;
+
+		wheel = new Timer[BUCKET_COUNTS.length][];
+		for (int level = 0; level < wheel.length; level++) {
+			wheel[level] = new Timer[BUCKET_COUNTS[level]];
+			for (int index = 0; index < wheel[level].length; index++) {
+				wheel[level][index] = Timer.sentinel();
+			}
+		}
+	}
+
+
+	/**
+	 * Advances the time of this wheel and passes the expired timers to the given consumer.
+	 * The expired timers are descheduled before being passed to the consumer, which may schedule or deschedule timers.
+	 * Time never moves backwards.
+	 */
+	public void advance(long time, Consumer<? super Timer<T>> expiredTimerConsumer) {
+		Contract.checkArgument(expiredTimerConsumer != null, "Expired timer consumer must not be null");
+
+		long previousTime = currentTime;
+		if (time <= previousTime) {
+			return;
+		}
+
+		currentTime = time;
+
+		for (int level = 0; level < wheel.length; level++) {
+			long previousTicks = previousTime >>> SHIFTS[level];
+			long currentTicks = time >>> SHIFTS[level];
+			if (currentTicks == previousTicks) {
+				break;
+			}
+
+			// The finest buckets are processed once their span has elapsed,
+			// the coarser ones as soon as their span starts, so that their timers cascade in time.
+			long firstTick = (level == 0) ? previousTicks : (previousTicks + 1L);
+			long tickCount = Math.min(currentTicks - previousTicks, wheel[level].length);
+			for (long tick = firstTick; tick < (firstTick + tickCount); tick++) {
+				processBucket(wheel[level][(int) (tick & (wheel[level].length - 1))], expiredTimerConsumer);
+			}
+		}
+	}
+
+	/**
+	 * Deschedules all timers.
+	 */
+	public void clear() {
+		for (Timer<T>[] buckets : wheel) {
+			for (Timer<T> sentinel : buckets) {
+				while (sentinel.next != sentinel) {
+					sentinel.next.unlink();
+				}
+			}
+		}
+
+		size = 0;
+	}
+
+	/**
+	 * Deschedules the given timer, if scheduled.
+	 */
+	public void deschedule(Timer<T> timer) {
+		Contract.checkArgument(timer != null, "Timer must not be null");
+
+		if (timer.isScheduled()) {
+			timer.unlink();
+			size -= 1;
+		}
+	}
+
+	/**
+	 * Passes the timers whose deadline has already passed, but which have not been reported yet due to the granularity of this wheel,
+	 * to the given consumer. Combined with {@link #advance(long, Consumer)}, reports all expired timers exactly.
+	 * Costs O(n) in the number of timers due within the current finest bucket span.
+	 */
+	public void expireOverdue(Consumer<? super Timer<T>> expiredTimerConsumer) {
+		Contract.checkArgument(expiredTimerConsumer != null, "Expired timer consumer must not be null");
+
+		// Overdue timers are always in the finest bucket of the current time
+		processBucket(wheel[0][(int) ((currentTime >>> SHIFTS[0]) & (wheel[0].length - 1))], expiredTimerConsumer);
+	}
+
+	public long getCurrentTime() {
+		return currentTime;
+	}
+
+	/**
+	 * Schedules the given timer according to its current deadline.
+	 * Reschedules the timer if already scheduled.
+	 */
+	public void schedule(Timer<T> timer) {
+		Contract.checkArgument(timer != null, "Timer must not be null");
+
+		deschedule(timer);
+
+		findBucket(timer.deadline).linkLast(timer);
+		size += 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+
+	private Timer<T> findBucket(long deadline) {
+		// Overdue timers go to the bucket processed on the next advance
+		long effectiveDeadline = Math.max(deadline, currentTime);
+		long delay = effectiveDeadline - currentTime;
+
+		int level = 0;
+		while (delay >= SPANS[level + 1]) {
+			level += 1;
+		}
+
+		long ticks = effectiveDeadline >>> SHIFTS[level];
+
+		return wheel[level][(int) (ticks & (wheel[level].length - 1))];
+	}
+
+	private void processBucket(Timer<T> sentinel, Consumer<? super Timer<T>> expiredTimerConsumer) {
+		if (sentinel.next == sentinel) {
+			return;
+		}
+
+		// Detach all timers first, so that rescheduled timers are not processed again
+		Timer<T> pending = Timer.sentinel();
+		pending.next = sentinel.next;
+		pending.previous = sentinel.previous;
+		pending.next.previous = pending;
+		pending.previous.next = pending;
+		sentinel.next = sentinel;
+		sentinel.previous = sentinel;
+
+		while (pending.next != pending) {
+			Timer<T> timer = pending.next;
+			timer.unlink();
+			size -= 1;
+
+			if (timer.deadline < currentTime) {
+				expiredTimerConsumer.accept(timer);
+			} else {
+				schedule(timer);
+			}
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	public static class Timer<T> {
+
+		private volatile long deadline;
+
+		private Timer<T> next;
+
+		private Timer<T> previous;
+
+		private final T value;
+
+
+		public Timer(T value, long deadline) {
+			this.value = value;
+			this.deadline = deadline;
+		}
+
+
+		public long getDeadline() {
+			return deadline;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		public boolean isScheduled() {
+			return (next != null);
+		}
+
+		/**
+		 * Sets the deadline of this timer.
+		 * Postponing the deadline does not require rescheduling the timer, advancing it does.
+		 */
+		public void setDeadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+
+		private static <T> Timer<T> sentinel() {
+			Timer<T> sentinel = new Timer<>(null, Long.MAX_VALUE);
+			sentinel.next = sentinel;
+			sentinel.previous = sentinel;
+
+			return sentinel;
+		}
+
+		private void linkLast(Timer<T> timer) {
+			timer.previous = previous;
+			timer.next = this;
+			previous.next = timer;
+			previous = timer;
+		}
+
+		private void unlink() {
+			previous.next = next;
+			next.previous = previous;
+			next = null;
+			previous = null;
+		}
+
+	}
+
+}
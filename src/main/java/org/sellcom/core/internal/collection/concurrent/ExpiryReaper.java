@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.collection.concurrent;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Single daemon thread shared by all expiring collections to periodically remove their expired entries.
+ * Registered collections are held weakly, and unregistered once garbage collected.
+ */
+public class ExpiryReaper {
+
+	private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.setName("ExpiryReaper.ReaperThread@" + System.identityHashCode(thread));
+
+		return thread;
+	});
+
+
+	private ExpiryReaper() {
+		// Utility class, not to be instantiated
+	}
+
+
+	/**
+	 * Periodically passes the given owner to the given reaping action, until the owner is garbage collected.
+	 * The action must not hold a strong reference to the owner.
+	 */
+	public static <T> void register(T owner, Consumer<? super T> reapingAction, long period, TimeUnit unit) {
+		Contract.checkArgument(owner != null, "Owner must not be null");
+		Contract.checkArgument(reapingAction != null, "Reaping action must not be null");
+		Contract.checkArgument(period > 0L, "Period must be positive: {0}", period);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+
+		ReapingTask<T> task = new ReapingTask<>(owner, reapingAction);
+		task.future = EXECUTOR.scheduleWithFixedDelay(task, period, period, unit);
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class ReapingTask<T> implements Runnable {
+
+		private volatile ScheduledFuture<?> future;
+
+		private final WeakReference<T> owner;
+
+		private final Consumer<? super T> reapingAction;
+
+
+		private ReapingTask(T owner, Consumer<? super T> reapingAction) {
+			this.owner = new WeakReference<>(owner);
+			this.reapingAction = reapingAction;
+		}
+
+
+		@Override
+		public void run() {
+			T currentOwner = owner.get();
+			if (currentOwner == null) {
+				ScheduledFuture<?> currentFuture = future;
+				if (currentFuture != null) {
+					currentFuture.cancel(false);
+				}
+
+				return;
+			}
+
+			try {
+				reapingAction.accept(currentOwner);
+			} catch (RuntimeException e) {
+				// Keep reaping, an exception would suppress all subsequent runs
+			}
+		}
+
+	}
+
+}
@@ -23,10 +23,11 @@
 import java.util.concurrent.TimeUnit;
 
 import org.sellcom.core.Contract;
+import org.sellcom.core.util.CoarseClock;
 
 public abstract class SimpleDelayed<T> implements Delayed {
 
-	private static Clock clock = Clock.systemUTC();
+	private static Clock clock = CoarseClock.getDefault();
 
 	private final long timestamp;
 
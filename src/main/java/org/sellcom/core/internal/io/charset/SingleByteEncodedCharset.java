@@ -21,11 +21,8 @@
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
-import java.util.Arrays;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
-import org.sellcom.core.collection.Iterables;
+import org.sellcom.core.collection.SparseIntArray;
 
 public abstract class SingleByteEncodedCharset extends Charset {
 
@@ -53,26 +50,18 @@ public CharsetEncoder newEncoder() {
 
 
 	private static SparseIntArray createEncodeTable(int[] decodeTable) {
-		SortedMap<Integer, Integer> mappings = new TreeMap<>();
+		SparseIntArray encodeTable = new SparseIntArray(decodeTable.length);
 		for (int i = 0, j = decodeTable.length; i < j; i += 1) {
 			if (decodeTable[i] != -1) {
-				mappings.put(decodeTable[i], i);
+				encodeTable.set(decodeTable[i], i);
 			}
 		}
 
-		SparseIntArray encodeTable = new SparseIntArray();
-		encodeTable.indices = toIntArray(mappings.keySet());
-		encodeTable.values = toIntArray(mappings.values());
+		encodeTable.trimToSize();
 
 		return encodeTable;
 	}
 
-	private static int[] toIntArray(Iterable<Integer> iterable) {
-		return Iterables.stream(iterable)
-				.mapToInt(Integer::intValue)
-				.toArray();
-	}
-
 	// ------------------------------------------------------------
 	// ------------------------------------------------------------
 	// ------------------------------------------------------------
@@ -135,7 +124,7 @@ protected CoderResult encodeLoop(CharBuffer source, ByteBuffer destination) {
 				}
 
 				int currentChar = source.get();
-				int currentByte = encodeTable.get(currentChar);
+				int currentByte = encodeTable.getOrDefault(currentChar, -1);
 				if (currentByte == -1) {
 					source.position(source.position() - 1);
 
@@ -153,23 +142,4 @@ protected CoderResult encodeLoop(CharBuffer source, ByteBuffer destination) {
 
 	}
 
-	// ------------------------------------------------------------
-	// ------------------------------------------------------------
-	// ------------------------------------------------------------
-
-	private static class SparseIntArray {
-
-		private int[] indices;
-
-		private int[] values;
-
-
-		private int get(int index) {
-			int valueIndex = Arrays.binarySearch(indices, index);
-
-			return (valueIndex == -1) ? -1 : values[valueIndex];
-		}
-
-	}
-
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalListener;
+import org.sellcom.core.util.RemovalNotification;
+
+/**
+ * Buffer of removal notifications, which are enqueued while the owner is locked,
+ * and dispatched to the listener in batches on the executor once the owner has been unlocked.
+ */
+public class RemovalNotifier<K, V> {
+
+	@SuppressWarnings("rawtypes")
+	private static final RemovalNotifier DISABLED = new RemovalNotifier();
+
+	private final Executor executor;
+
+	private final RemovalListener<K, V> listener;
+
+	private final Queue<RemovalNotification<K, V>> pendingNotifications = new ConcurrentLinkedQueue<>();
+
+
+	public RemovalNotifier(RemovalListener<K, V> listener, Executor executor) {
+		Contract.checkArgument(listener != null, "Listener must not be null");
+		Contract.checkArgument(executor != null, "Executor must not be null");
+
+		this.listener = listener;
+		this.executor = executor;
+	}
+
+	private RemovalNotifier() {
+		listener = null;
+		executor = null;
+	}
+
+
+	/**
+	 * Returns a notifier which discards all notifications.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> RemovalNotifier<K, V> disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * Submits the pending notifications, if any, to the executor as a single batch.
+	 * Must not be called while the owner is locked.
+	 */
+	public void dispatch() {
+		if (pendingNotifications.isEmpty()) {
+			return;
+		}
+
+		List<RemovalNotification<K, V>> notifications = new ArrayList<>();
+		RemovalNotification<K, V> notification;
+		while ((notification = pendingNotifications.poll()) != null) {
+			notifications.add(notification);
+		}
+
+		if (!notifications.isEmpty()) {
+			executor.execute(() -> listener.onRemoval(notifications));
+		}
+	}
+
+	/**
+	 * Enqueues the notification of the removal of the given entry, to be dispatched later.
+	 */
+	public void enqueue(K key, V value, RemovalCause cause) {
+		if (listener != null) {
+			pendingNotifications.add(new RemovalNotification<>(key, value, cause));
+		}
+	}
+
+	public boolean isEnabled() {
+		return (listener != null);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.util.cache;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Count-min sketch estimating access frequencies using four 4-bit counters per element.
+ * Periodically halves all counters so that the estimates decay over time.
+ * Not thread-safe.
+ */
+public class FrequencySketch {
+
+	private static final int MAXIMUM_CAPACITY = 1 << 26;
+
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final long[] SEEDS = {
+		0xC3A5C85C97CB3127L,
+		0xB492B66FBE98F273L,
+		0x9AE16A3B2F90404FL,
+		0xCBF29CE484222325L
+	};
+
+	private int sampleSize;
+
+	private int size;
+
+	private long[] table;
+
+	private int tableMask;
+
+
+	public FrequencySketch(long expectedSize) {
+		Contract.checkArgument(expectedSize >= 0L, "Expected size must not be negative: {0}", expectedSize);
+
+		ensureCapacity(expectedSize);
+	}
+
+
+	/**
+	 * Grows the sketch, if necessary, to keep the estimates accurate for the given number of elements.
+	 * Growing the sketch discards all the collected frequencies.
+	 */
+	public void ensureCapacity(long expectedSize) {
+		int capacity = (int) Math.max(1L, Math.min(expectedSize, MAXIMUM_CAPACITY));
+		if ((table != null) && (capacity <= table.length)) {
+			return;
+		}
+
+		table = new long[ceilingPowerOfTwo(capacity)];
+		tableMask = table.length - 1;
+		sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+		size = 0;
+	}
+
+	public int frequency(Object element) {
+		int hash = spread(element.hashCode());
+		int start = (hash & 3) << 2;
+
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+
+			frequency = Math.min(frequency, count);
+		}
+
+		return frequency;
+	}
+
+	public void increment(Object element) {
+		int hash = spread(element.hashCode());
+		int start = (hash & 3) << 2;
+
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+
+		if (added && (++size == sampleSize)) {
+			reset();
+		}
+	}
+
+
+	private static int ceilingPowerOfTwo(int value) {
+		return 1 << -Integer.numberOfLeadingZeros(value - 1);
+	}
+
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xFL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private int indexOf(int hash, int depth) {
+		long value = (hash + SEEDS[depth]) * SEEDS[depth];
+		value += value >>> 32;
+
+		return ((int) value) & tableMask;
+	}
+
+	private void reset() {
+		int oddCount = 0;
+		for (int i = 0; i < table.length; i++) {
+			oddCount += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+
+		size = (size >>> 1) - (oddCount >>> 2);
+	}
+
+	private static int spread(int value) {
+		value = ((value >>> 16) ^ value) * 0x45D9F3B;
+		value = ((value >>> 16) ^ value) * 0x45D9F3B;
+
+		return (value >>> 16) ^ value;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.util.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy striped ring buffer recording reads so that they can be replayed against a cache policy in batches.
+ * Elements are dropped when the buffer is full or contended, which only slightly reduces the policy accuracy.
+ * Any thread may offer elements, but only one thread at a time may drain the buffer.
+ */
+public class ReadBuffer<E> {
+
+	private static final int STRIPE_CAPACITY = 64;
+
+	private static final int STRIPE_MASK = STRIPE_CAPACITY - 1;
+
+	private static final int DRAIN_THRESHOLD = STRIPE_CAPACITY / 2;
+
+	private final Stripe<E>[] stripes;
+
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public ReadBuffer() {
+		int stripeCount = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>();
+		}
+	}
+
+
+	public void drainTo(Consumer<? super E> consumer) {
+		for (Stripe<E> stripe : stripes) {
+			stripe.drainTo(consumer);
+		}
+	}
+
+	/**
+	 * Records the given element and returns {@code true} if the buffer should be drained.
+	 */
+	public boolean offer(E element) {
+		int stripeIndex = (int) Thread.currentThread().getId() & (stripes.length - 1);
+
+		return stripes[stripeIndex].offer(element);
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Stripe<E> {
+
+		private final AtomicReferenceArray<E> elements = new AtomicReferenceArray<>(STRIPE_CAPACITY);
+
+		private volatile long readCounter;
+
+		private final AtomicLong writeCounter = new AtomicLong();
+
+
+		private void drainTo(Consumer<? super E> consumer) {
+			long head = readCounter;
+			long tail = writeCounter.get();
+
+			for (; head < tail; head++) {
+				int index = (int) head & STRIPE_MASK;
+
+				E element = elements.get(index);
+				if (element == null) { // Not published yet
+					break;
+				}
+
+				elements.lazySet(index, null);
+				consumer.accept(element);
+			}
+
+			readCounter = head;
+		}
+
+		private boolean offer(E element) {
+			long head = readCounter;
+			long tail = writeCounter.get();
+
+			long size = tail - head;
+			if (size >= STRIPE_CAPACITY) {
+				return true;
+			}
+
+			if (writeCounter.compareAndSet(tail, tail + 1L)) {
+				elements.lazySet((int) tail & STRIPE_MASK, element);
+
+				return (size + 1L) >= DRAIN_THRESHOLD;
+			}
+
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.util.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Shared reference queue drained by a single low-priority daemon thread, started when the queue is first used.
+ * References registered with the queue must implement {@link Reapable}, and are passed to {@link Reapable#reap()} once cleared.
+ */
+public class ReferenceReaper {
+
+	private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+	static {
+		Thread thread = new Thread(ReferenceReaper::reapReferences);
+		thread.setDaemon(true);
+		thread.setName("ReferenceReaper.ReaperThread@" + System.identityHashCode(thread));
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+
+	private ReferenceReaper() {
+		// Utility class, not to be instantiated
+	}
+
+
+	public static ReferenceQueue<Object> getQueue() {
+		return QUEUE;
+	}
+
+
+	private static void reapReferences() {
+		while (true) {
+			try {
+				Reference<?> reference = QUEUE.remove();
+				((Reapable) reference).reap();
+			} catch (InterruptedException e) {
+				// Keep reaping, the thread is shared and never stops
+			} catch (RuntimeException e) {
+				// Keep reaping, one failing reference must not stop the others from being reaped
+			}
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	/**
+	 * Reference to be processed once cleared.
+	 * Called on the reaper thread, so implementations must be short and thread-safe.
+	 */
+	public interface Reapable {
+
+		void reap();
+
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.internal.util.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Allocator of fixed-size chunks in direct memory.
+ * <p>
+ * Memory is divided into slabs, which are allocated lazily up to the given capacity.
+ * Each slab is assigned to a size class and carved into chunks of that size class; chunk sizes are powers of two from 64 bytes up to the slab size.
+ * A chunk is identified by a handle encoding its slab and offset.
+ * <p>
+ * Not thread-safe.
+ */
+public class SlabAllocator {
+
+	private static final int MINIMUM_CHUNK_SHIFT = 6; // 64 bytes
+
+	private final int[] freeChunkCounts;
+
+	private final long[][] freeChunks;
+
+	private final int maximumSlabCount;
+
+	private int[] slabClasses;
+
+	private final int slabSize;
+
+	private ByteBuffer[] slabs;
+
+	private int slabCount;
+
+
+	public SlabAllocator(long capacity, int slabSize) {
+		Contract.checkArgument(slabSize >= (1 << MINIMUM_CHUNK_SHIFT), "Slab size must be at least 64 bytes: {0}", slabSize);
+		Contract.checkArgument(Integer.bitCount(slabSize) == 1, "Slab size must be a power of two: {0}", slabSize);
+		Contract.checkArgument(capacity >= slabSize, "Capacity must not be less than slab size: {0}", capacity);
+		Contract.checkArgument(((capacity + slabSize - 1L) / slabSize) <= Integer.MAX_VALUE, "Capacity is too large: {0}", capacity);
+
+		this.slabSize = slabSize;
+
+		maximumSlabCount = (int) ((capacity + slabSize - 1L) / slabSize);
+		slabs = new ByteBuffer[Math.min(maximumSlabCount, 16)];
+		slabClasses = new int[slabs.length];
+
+		int sizeClassCount = Integer.numberOfTrailingZeros(slabSize) - MINIMUM_CHUNK_SHIFT + 1;
+		freeChunks = new long[sizeClassCount][];
+		freeChunkCounts = new int[sizeClassCount];
+		for (int sizeClass = 0; sizeClass < sizeClassCount; sizeClass++) {
+			freeChunks[sizeClass] = new long[0];
+		}
+	}
+
+
+	/**
+	 * Allocates a chunk of the given size class.
+	 * Returns {@code -1} if there is no free chunk of the size class and all slabs are already assigned.
+	 */
+	public long allocate(int sizeClass) {
+		if (freeChunkCounts[sizeClass] == 0) {
+			if (slabCount == maximumSlabCount) {
+				return -1L;
+			}
+
+			if (slabCount == slabs.length) {
+				int newLength = (int) Math.min((long) slabs.length << 1, maximumSlabCount);
+				slabs = Arrays.copyOf(slabs, newLength);
+				slabClasses = Arrays.copyOf(slabClasses, newLength);
+			}
+
+			slabs[slabCount] = ByteBuffer.allocateDirect(slabSize);
+			assign(slabCount, sizeClass);
+			slabCount += 1;
+		}
+
+		freeChunkCounts[sizeClass] -= 1;
+
+		return freeChunks[sizeClass][freeChunkCounts[sizeClass]];
+	}
+
+	public static int chunkSize(int sizeClass) {
+		return 1 << (sizeClass + MINIMUM_CHUNK_SHIFT);
+	}
+
+	/**
+	 * Returns the given chunk to the free chunks of the given size class.
+	 */
+	public void free(long chunk, int sizeClass) {
+		push(sizeClass, chunk);
+	}
+
+	public int getSlabClass(int slab) {
+		return slabClasses[slab];
+	}
+
+	public int getSlabCount() {
+		return slabCount;
+	}
+
+	public int getSlabSize() {
+		return slabSize;
+	}
+
+	/**
+	 * Reassigns the given slab to the given size class.
+	 * All chunks of the slab must be free.
+	 */
+	public void reassign(int slab, int sizeClass) {
+		int previousSizeClass = slabClasses[slab];
+
+		// Removes the chunks of the slab from the free chunks of its previous size class
+		long[] chunks = freeChunks[previousSizeClass];
+		int retainedCount = 0;
+		for (int i = 0; i < freeChunkCounts[previousSizeClass]; i++) {
+			if (slab(chunks[i]) != slab) {
+				chunks[retainedCount++] = chunks[i];
+			}
+		}
+		Contract.checkState(retainedCount == (freeChunkCounts[previousSizeClass] - (slabSize / chunkSize(previousSizeClass))), "Slab is in use: {0}", slab);
+		freeChunkCounts[previousSizeClass] = retainedCount;
+
+		assign(slab, sizeClass);
+	}
+
+	/**
+	 * Returns a read-only view of the first {@code length} bytes of the given chunk.
+	 */
+	public ByteBuffer read(long chunk, int length) {
+		ByteBuffer view = slabs[slab(chunk)].asReadOnlyBuffer();
+		view.position(offset(chunk));
+		view.limit(offset(chunk) + length);
+
+		return view.slice();
+	}
+
+	public int sizeClass(int length) {
+		Contract.checkArgument(length <= slabSize, "Length must not be greater than slab size: {0}", length);
+
+		int shift = (length <= 1) ? 0 : (Integer.SIZE - Integer.numberOfLeadingZeros(length - 1));
+
+		return Math.max(0, shift - MINIMUM_CHUNK_SHIFT);
+	}
+
+	public static int slab(long chunk) {
+		return (int) (chunk >>> Integer.SIZE);
+	}
+
+	/**
+	 * Copies the remaining bytes of the given buffer to the given chunk, without changing the position of the buffer.
+	 */
+	public void write(long chunk, ByteBuffer source) {
+		ByteBuffer target = slabs[slab(chunk)].duplicate();
+		target.position(offset(chunk));
+		target.put(source.duplicate());
+	}
+
+
+	private void assign(int slab, int sizeClass) {
+		slabClasses[slab] = sizeClass;
+
+		// Pushed in reverse order, so that the chunks are allocated from the start of the slab
+		int chunkSize = chunkSize(sizeClass);
+		for (int offset = slabSize - chunkSize; offset >= 0; offset -= chunkSize) {
+			push(sizeClass, ((long) slab << Integer.SIZE) | offset);
+		}
+	}
+
+	private static int offset(long chunk) {
+		return (int) chunk;
+	}
+
+	private void push(int sizeClass, long chunk) {
+		if (freeChunkCounts[sizeClass] == freeChunks[sizeClass].length) {
+			freeChunks[sizeClass] = Arrays.copyOf(freeChunks[sizeClass], Math.max(16, freeChunks[sizeClass].length << 1));
+		}
+
+		freeChunks[sizeClass][freeChunkCounts[sizeClass]] = chunk;
+		freeChunkCounts[sizeClass] += 1;
+	}
+
+}
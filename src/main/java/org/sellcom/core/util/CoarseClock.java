@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Monotonic clock with a coarse resolution, intended for expiry checks in hot loops.
+ * <p>
+ * The current time is a volatile field updated by a single daemon thread shared by all resolutions.
+ * It is derived from {@link System#nanoTime()}, anchored to the wall-clock time when this class was initialized,
+ * so it never moves backwards even if the wall-clock time does.
+ * <p>
+ * The expiring maps and caches use the {@linkplain #getDefault() default clock} unless given another one.
+ *
+ * @since 2.1
+ */
+public final class CoarseClock extends Clock {
+
+	private static final long DEFAULT_RESOLUTION = 1L; // Milliseconds
+
+	private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.setName("CoarseClock.TickerThread@" + System.identityHashCode(thread));
+
+		return thread;
+	});
+
+	private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+
+	private static final long ORIGIN_NANOS = System.nanoTime();
+
+	private static final ConcurrentMap<Long, Ticker> TICKERS = new ConcurrentHashMap<>();
+
+	private final Ticker ticker;
+
+	private final ZoneId zone;
+
+
+	private CoarseClock(Ticker ticker, ZoneId zone) {
+		this.ticker = ticker;
+		this.zone = zone;
+	}
+
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CoarseClock)) {
+			return false;
+		}
+
+		CoarseClock otherClock = (CoarseClock) other;
+
+		return (ticker == otherClock.ticker) && zone.equals(otherClock.zone);
+	}
+
+	/**
+	 * Returns the shared clock with the default resolution of one millisecond.
+	 *
+	 * @since 2.1
+	 */
+	public static CoarseClock getDefault() {
+		return withResolution(DEFAULT_RESOLUTION, MILLISECONDS);
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(ticker) ^ zone.hashCode();
+	}
+
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(ticker.millis);
+	}
+
+	@Override
+	public long millis() {
+		return ticker.millis;
+	}
+
+	/**
+	 * Returns the shared clock with the given resolution, which must be at least one millisecond.
+	 * Clocks with the same resolution share the same ticker.
+	 *
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if the resolution is shorter than one millisecond
+	 *
+	 * @since 2.1
+	 */
+	public static CoarseClock withResolution(long resolution, TimeUnit unit) {
+		Contract.checkArgument(unit != null, "Unit must not be null");
+		Contract.checkArgument(unit.toMillis(resolution) >= 1L, "Resolution must be at least one millisecond: {0} {1}", resolution, unit);
+
+		return new CoarseClock(TICKERS.computeIfAbsent(unit.toMillis(resolution), Ticker::new), ZoneOffset.UTC);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code zone} is {@code null}
+	 */
+	@Override
+	public CoarseClock withZone(ZoneId zone) {
+		Contract.checkArgument(zone != null, "Zone must not be null");
+
+		return zone.equals(this.zone) ? this : new CoarseClock(ticker, zone);
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Ticker {
+
+		private volatile long millis;
+
+
+		private Ticker(long resolution) {
+			tick();
+
+			EXECUTOR.scheduleAtFixedRate(this::tick, resolution, resolution, MILLISECONDS);
+		}
+
+
+		private void tick() {
+			millis = ORIGIN_MILLIS + MILLISECONDS.convert(System.nanoTime() - ORIGIN_NANOS, TimeUnit.NANOSECONDS);
+		}
+
+	}
+
+}
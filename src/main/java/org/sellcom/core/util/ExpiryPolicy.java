@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+/**
+ * Policies determining when the entries of expiring maps and caches expire.
+ *
+ * @since 2.1
+ *
+ * @see org.sellcom.core.util.cache.ExpiringCache
+ * @see org.sellcom.core.collection.concurrent.ExpiringHashMap
+ */
+public enum ExpiryPolicy {
+
+	/**
+	 * Entries expire once the given time has elapsed since they were last read or written.
+	 *
+	 * @since 2.1
+	 */
+	EXPIRE_AFTER_ACCESS,
+
+	/**
+	 * Entries expire once the given time has elapsed since they were last written.
+	 *
+	 * @since 2.1
+	 */
+	EXPIRE_AFTER_WRITE
+
+}
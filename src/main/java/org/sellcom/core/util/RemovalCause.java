@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+/**
+ * Reason for removing an entry from a cache or an expiring map.
+ *
+ * @since 2.1
+ */
+public enum RemovalCause {
+
+	/**
+	 * The value was reclaimed by the garbage collector.
+	 *
+	 * @since 2.1
+	 */
+	COLLECTED,
+
+	/**
+	 * The entry expired.
+	 *
+	 * @since 2.1
+	 */
+	EXPIRED,
+
+	/**
+	 * The entry was removed explicitly.
+	 *
+	 * @since 2.1
+	 */
+	EXPLICIT,
+
+	/**
+	 * The value was replaced by another value.
+	 * Not an eviction, so not recorded in the cache statistics.
+	 *
+	 * @since 2.1
+	 */
+	REPLACED,
+
+	/**
+	 * The entry was evicted to keep the cache within its maximum size, weight or capacity.
+	 *
+	 * @since 2.1
+	 */
+	SIZE;
+
+
+	/**
+	 * Returns whether the entry was evicted, that is, removed for any other reason than being replaced.
+	 *
+	 * @since 2.1
+	 */
+	public boolean isEviction() {
+		return (this != REPLACED);
+	}
+
+}
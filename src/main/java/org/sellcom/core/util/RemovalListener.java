@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Listener notified of entries removed from a cache or an expiring map.
+ * <p>
+ * Notifications are delivered in batches on an {@link Executor}, never while the cache or the map is locked.
+ * Batches may be delivered concurrently, or out of order, unless the executor runs its tasks sequentially.
+ *
+ * @since 2.1
+ *
+ * @see org.sellcom.core.util.cache.Cache#setRemovalListener(RemovalListener, Executor)
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+	/**
+	 * Called with the notifications of entries removed since the previous batch, in the order of their removal.
+	 *
+	 * @since 2.1
+	 */
+	void onRemoval(List<RemovalNotification<K, V>> notifications);
+
+}
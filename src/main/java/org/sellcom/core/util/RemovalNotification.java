@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+import java.util.Objects;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Notification of an entry removed from a cache or an expiring map.
+ *
+ * @since 2.1
+ *
+ * @see RemovalListener
+ */
+public final class RemovalNotification<K, V> {
+
+	private final RemovalCause cause;
+
+	private final K key;
+
+	private final V value;
+
+
+	/**
+	 * Creates a notification of the removal of the given entry for the given cause.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws IllegalArgumentException if {@code cause} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public RemovalNotification(K key, V value, RemovalCause cause) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(cause != null, "Cause must not be null");
+
+		this.key = key;
+		this.value = value;
+		this.cause = cause;
+	}
+
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+
+		if (other instanceof RemovalNotification) {
+			RemovalNotification<?, ?> otherNotification = (RemovalNotification<?, ?>) other;
+
+			return (cause == otherNotification.cause)
+				&& key.equals(otherNotification.key)
+				&& Objects.equals(value, otherNotification.value);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the reason for removing the entry.
+	 *
+	 * @since 2.1
+	 */
+	public RemovalCause getCause() {
+		return cause;
+	}
+
+	/**
+	 * Returns the key of the removed entry.
+	 *
+	 * @since 2.1
+	 */
+	public K getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the value of the removed entry.
+	 * Returns {@code null} if the value was reclaimed by the garbage collector.
+	 *
+	 * @since 2.1
+	 */
+	public V getValue() {
+		return value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(key, value, cause);
+	}
+
+	@Override
+	public String toString() {
+		return key + "=" + value + " [" + cause + "]";
+	}
+
+}
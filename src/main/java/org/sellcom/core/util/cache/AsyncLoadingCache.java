@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Thread-safe unbounded cache loading values asynchronously.
+ * <p>
+ * Values are loaded by the given mapping function on the given executor, never on the requesting thread.
+ * Concurrent requests for a value being loaded share the same future.
+ * Failed loads, as well as loads producing {@code null}, are not cached.
+ * <p>
+ * Optionally, values are refreshed once the given time has elapsed since they were written:
+ * the first request after that time triggers a reload in the background, and the current value is returned until the reload completes.
+ *
+ * @since 2.1
+ */
+public final class AsyncLoadingCache<K, V> implements Cache<K, V> {
+
+	private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	private final Executor executor;
+
+	private final Function<K, V> mappingFunction;
+
+	private final long refreshAfterWrite; // Nanoseconds
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+
+	/**
+	 * Creates an unbounded cache that uses the given mapping function to load values from keys asynchronously in the common fork/join pool.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public AsyncLoadingCache(Function<K, V> mappingFunction) {
+		this(mappingFunction, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates an unbounded cache that uses the given mapping function to load values from keys asynchronously on the given executor.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public AsyncLoadingCache(Function<K, V> mappingFunction, Executor executor) {
+		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
+		Contract.checkArgument(executor != null, "Executor must not be null");
+
+		this.mappingFunction = mappingFunction;
+		this.executor = executor;
+		this.refreshAfterWrite = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Creates an unbounded cache that uses the given mapping function to load values from keys asynchronously on the given executor,
+	 * and to refresh them once the given time has elapsed since they were written.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 * @throws IllegalArgumentException if {@code refreshAfterWrite} is not positive
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public AsyncLoadingCache(Function<K, V> mappingFunction, Executor executor, long refreshAfterWrite, TimeUnit unit) {
+		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
+		Contract.checkArgument(executor != null, "Executor must not be null");
+		Contract.checkArgument(refreshAfterWrite > 0L, "Refresh time must be positive: {0}", refreshAfterWrite);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+
+		this.mappingFunction = mappingFunction;
+		this.executor = executor;
+		this.refreshAfterWrite = unit.toNanos(refreshAfterWrite);
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		if (entries.remove(key) != null) {
+			statsCounter.recordEviction(RemovalCause.EXPLICIT);
+		}
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		entries.computeIfPresent(key, (currentKey, currentEntry) -> {
+			if (Objects.equals(currentEntry.getNow(), value)) {
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+
+				return null;
+			}
+
+			return currentEntry;
+		});
+	}
+
+	@Override
+	public void evictAll() {
+		entries.keySet().removeIf(key -> {
+			statsCounter.recordEviction(RemovalCause.EXPLICIT);
+
+			return true;
+		});
+	}
+
+	/**
+	 * Performs the given action for each entry in this cache until all entries have been processed or the action throws an exception.
+	 * Skips entries whose values are still being loaded.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		entries.forEach((currentKey, currentEntry) -> {
+			V currentValue = currentEntry.getNow();
+			if (currentValue != null) {
+				action.accept(currentKey, currentValue);
+			}
+		});
+	}
+
+	/**
+	 * Returns the value associated with the given key in this cache, loading it if necessary.
+	 * Blocks until the value is loaded.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws CompletionException if the mapping function throws an exception
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public Optional<V> get(K key) {
+		return Optional.ofNullable(getAsync(key).join());
+	}
+
+	/**
+	 * Returns the values associated with the given keys in this cache, loading them if necessary.
+	 * Loads all the missing values concurrently and blocks until they are loaded.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null}
+	 * @throws IllegalArgumentException if any of {@code keys} is {@code null}
+	 * @throws CompletionException if the mapping function throws an exception
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public Map<K, V> getAll(Iterable<? extends K> keys) {
+		Contract.checkArgument(keys != null, "Keys must not be null");
+
+		Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+		for (K key : keys) {
+			futures.put(key, getAsync(key));
+		}
+
+		Map<K, V> values = new LinkedHashMap<>();
+		futures.forEach((key, future) -> {
+			V value = future.join();
+			if (value != null) {
+				values.put(key, value);
+			}
+		});
+
+		return values;
+	}
+
+	/**
+	 * Returns a future of the value associated with the given key in this cache, loading it asynchronously if necessary.
+	 * The future completes with {@code null} if the mapping function produces {@code null},
+	 * and exceptionally if the mapping function throws an exception.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public CompletableFuture<V> getAsync(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			Entry<V> newEntry = new Entry<>(new CompletableFuture<>());
+
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null) { // Not loaded by another thread meanwhile
+				statsCounter.recordMisses(1);
+				load(key, newEntry);
+
+				return newEntry.future;
+			}
+		}
+
+		statsCounter.recordHits(1);
+
+		if (entry.isRefreshRequired(refreshAfterWrite)) {
+			refresh(key, entry);
+		}
+
+		return entry.future;
+	}
+
+	/**
+	 * Returns the value associated with the given key in this cache.
+	 * Returns the given default value if this cache contains no entry with the key, or if the value is still being loaded.
+	 * Does not load the value.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Entry<V> entry = entries.get(key);
+		V value = (entry != null) ? entry.getNow() : null;
+		if (value == null) {
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		statsCounter.recordHits(1);
+
+		return value;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		entries.put(key, new Entry<>(CompletableFuture.completedFuture(value)));
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		entries.putIfAbsent(key, new Entry<>(CompletableFuture.completedFuture(value)));
+	}
+
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		entries.forEach((key, entry) -> {
+			V value = entry.getNow();
+			if (value != null) {
+				builder.append(key);
+				builder.append("=");
+				builder.append(value);
+				builder.append(", ");
+			}
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+
+	private void load(K key, Entry<V> entry) {
+		// Failed loads are not cached, so that the next request retries
+		entry.future.whenComplete((value, exception) -> {
+			if ((exception != null) || (value == null)) {
+				entries.remove(key, entry);
+			} else {
+				entry.writeTime = System.nanoTime();
+			}
+		});
+
+		try {
+			executor.execute(() -> {
+				try {
+					entry.future.complete(CacheSupport.loadValue(key, mappingFunction, statsCounter));
+				} catch (Throwable e) {
+					entry.future.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			entry.future.completeExceptionally(e);
+		}
+	}
+
+	private void refresh(K key, Entry<V> entry) {
+		if (!entry.refreshing.compareAndSet(false, true)) { // Already being refreshed
+			return;
+		}
+
+		try {
+			CompletableFuture.supplyAsync(() -> CacheSupport.loadValue(key, mappingFunction, statsCounter), executor).whenComplete((value, exception) -> {
+				// Keeps the current value if the reload fails,
+				// and discards the reloaded one if the entry has been replaced or evicted meanwhile
+				if ((exception != null) || (value == null) || !entries.replace(key, entry, new Entry<>(CompletableFuture.completedFuture(value)))) {
+					entry.refreshing.set(false);
+				}
+			});
+		} catch (RuntimeException e) {
+			entry.refreshing.set(false);
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Entry<V> {
+
+		private final CompletableFuture<V> future;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private volatile long writeTime;
+
+
+		private Entry(CompletableFuture<V> future) {
+			this.future = future;
+			this.writeTime = System.nanoTime();
+		}
+
+
+		private V getNow() {
+			if (future.isDone() && !future.isCompletedExceptionally()) {
+				return future.join();
+			}
+
+			return null;
+		}
+
+		private boolean isRefreshRequired(long refreshAfterWrite) {
+			return (refreshAfterWrite != Long.MAX_VALUE)
+				&& future.isDone()
+				&& !future.isCompletedExceptionally()
+				&& ((System.nanoTime() - writeTime) >= refreshAfterWrite)
+				&& !refreshing.get();
+		}
+
+	}
+
+}
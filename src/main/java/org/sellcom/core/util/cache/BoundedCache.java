@@ -0,0 +1,724 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.internal.util.cache.FrequencySketch;
+import org.sellcom.core.internal.util.cache.ReadBuffer;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Thread-safe cache bounded by the number or total weight of entries.
+ * <p>
+ * When the cache grows over its maximum size or weight, it evicts the entries least likely to be used again,
+ * as estimated from both recency and frequency of their use (W-TinyLFU policy).
+ * New entries are admitted to a small window first and compete for a place in the main space against its least recently used entry,
+ * based on their access frequencies recorded in a compact sketch.
+ * <p>
+ * Reads do not block: they are recorded in a lossy buffer and replayed against the eviction policy in batches,
+ * by whichever thread happens to acquire the policy lock.
+ *
+ * @since 2.1
+ */
+public final class BoundedCache<K, V> implements Cache<K, V> {
+
+	private static final int INITIAL_SKETCH_CAPACITY = 1024;
+
+	private static final double PROTECTED_PERCENTAGE = 0.8;
+
+	private static final double WINDOW_PERCENTAGE = 0.01;
+
+	private static final Weigher<Object, Object> SINGLETON_WEIGHER = (key, value) -> 1;
+
+	private final ConcurrentMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+
+	private volatile BiConsumer<? super K, ? super V> evictionListener;
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final FrequencySketch frequencySketch;
+
+	private final long mainMaximum;
+
+	private final long maximumWeight;
+
+	private final Function<K, V> mappingFunction;
+
+	private final AccessOrderDeque<K, V> probationDeque = new AccessOrderDeque<>();
+
+	private final AccessOrderDeque<K, V> protectedDeque = new AccessOrderDeque<>();
+
+	private final long protectedMaximum;
+
+	private final ReadBuffer<Node<K, V>> readBuffer = new ReadBuffer<>();
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+	private final Weigher<? super K, ? super V> weigher;
+
+	private final AccessOrderDeque<K, V> windowDeque = new AccessOrderDeque<>();
+
+	private final long windowMaximum;
+
+
+	/**
+	 * Creates a cache bounded by the given number of entries.
+	 *
+	 * @throws IllegalArgumentException if {@code maximumSize} is not positive
+	 *
+	 * @since 2.1
+	 */
+	public BoundedCache(long maximumSize) {
+		this(maximumSize, SINGLETON_WEIGHER, null, false);
+	}
+
+	/**
+	 * Creates a cache bounded by the given number of entries that uses the given mapping function to create values from keys.
+	 *
+	 * @throws IllegalArgumentException if {@code maximumSize} is not positive
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public BoundedCache(long maximumSize, Function<K, V> mappingFunction) {
+		this(maximumSize, SINGLETON_WEIGHER, mappingFunction, true);
+	}
+
+	/**
+	 * Creates a cache bounded by the given total weight of entries, as determined by the given weigher.
+	 *
+	 * @throws IllegalArgumentException if {@code maximumWeight} is not positive
+	 * @throws IllegalArgumentException if {@code weigher} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public BoundedCache(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+		this(maximumWeight, weigher, null, false);
+	}
+
+	/**
+	 * Creates a cache bounded by the given total weight of entries, as determined by the given weigher,
+	 * that uses the given mapping function to create values from keys.
+	 *
+	 * @throws IllegalArgumentException if {@code maximumWeight} is not positive
+	 * @throws IllegalArgumentException if {@code weigher} is {@code null}
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public BoundedCache(long maximumWeight, Weigher<? super K, ? super V> weigher, Function<K, V> mappingFunction) {
+		this(maximumWeight, weigher, mappingFunction, true);
+	}
+
+	private BoundedCache(long maximumWeight, Weigher<? super K, ? super V> weigher, Function<K, V> mappingFunction, boolean loading) {
+		Contract.checkArgument(maximumWeight > 0L, "Maximum weight must be positive: {0}", maximumWeight);
+		Contract.checkArgument(weigher != null, "Weigher must not be null");
+		Contract.checkArgument(!loading || (mappingFunction != null), "Mapping function must not be null");
+
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.mappingFunction = mappingFunction;
+
+		windowMaximum = Math.max(1L, (long) (WINDOW_PERCENTAGE * maximumWeight));
+		mainMaximum = maximumWeight - windowMaximum;
+		protectedMaximum = (long) (PROTECTED_PERCENTAGE * mainMaximum);
+
+		frequencySketch = new FrequencySketch(Math.min(maximumWeight, INITIAL_SKETCH_CAPACITY));
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		try {
+			evictionLock.lock();
+
+			Node<K, V> node = entries.remove(key);
+			if (node != null) {
+				unlink(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			evictionLock.lock();
+
+			Node<K, V> node = entries.get(key);
+			if ((node != null) && Objects.equals(node.value, value)) {
+				entries.remove(key, node);
+				unlink(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		try {
+			evictionLock.lock();
+
+			readBuffer.drainTo(node -> {});
+
+			entries.keySet().removeIf(key -> {
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+
+				return true;
+			});
+			windowDeque.clear();
+			probationDeque.clear();
+			protectedDeque.clear();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Evicts the given fraction of entries from this cache, starting with the entries least likely to be used again.
+	 * Entries which have been admitted to the main space only on probation are evicted first,
+	 * followed by the entries in the admission window and finally by the entries used repeatedly.
+	 * Returns the number of evicted entries.
+	 *
+	 * @throws IllegalArgumentException if {@code fraction} is not between 0 and 1
+	 *
+	 * @since 2.1
+	 *
+	 * @see MemoryPressureMonitor
+	 */
+	public int evictColdest(double fraction) {
+		Contract.checkArgument((fraction >= 0.0) && (fraction <= 1.0), "Fraction must be between 0 and 1: {0}", fraction);
+
+		try {
+			evictionLock.lock();
+
+			readBuffer.drainTo(this::onAccess);
+
+			int evictionCount = (int) Math.ceil(fraction * entries.size());
+			for (int i = 0; i < evictionCount; i++) {
+				Node<K, V> victim = probationDeque.peekFirst();
+				if (victim == null) {
+					victim = windowDeque.peekFirst();
+				}
+				if (victim == null) {
+					victim = protectedDeque.peekFirst();
+				}
+				if (victim == null) {
+					return i;
+				}
+
+				removeEvicted(victim);
+			}
+
+			return evictionCount;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		entries.forEach((currentKey, currentNode) -> action.accept(currentKey, currentNode.value));
+	}
+
+	@Override
+	public Optional<V> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Node<K, V> node = entries.get(key);
+		if (node != null) {
+			statsCounter.recordHits(1);
+			afterRead(node);
+
+			return Optional.of(node.value);
+		}
+
+		statsCounter.recordMisses(1);
+
+		if (mappingFunction == null) {
+			return Optional.empty();
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Node<K, V>[] createdNode = new Node[1];
+		node = entries.computeIfAbsent(key, currentKey -> {
+			V value = CacheSupport.loadValue(currentKey, mappingFunction, statsCounter);
+			if (value == null) {
+				return null;
+			}
+
+			createdNode[0] = new Node<>(currentKey, value, weigh(currentKey, value));
+
+			return createdNode[0];
+		});
+
+		if (node == null) {
+			return Optional.empty();
+		}
+
+		if (node == createdNode[0]) {
+			afterWrite(node);
+		} else {
+			afterRead(node);
+		}
+
+		return Optional.of(node.value);
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Node<K, V> node = entries.get(key);
+		if (node == null) {
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		statsCounter.recordHits(1);
+		afterRead(node);
+
+		return node.value;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			evictionLock.lock();
+
+			_put(key, value);
+			maintain();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		Contract.checkArgument(entries != null, "Entries must not be null");
+
+		entries.forEach((key, value) -> {
+			Contract.checkArgument(key != null, "Key must not be null");
+			Contract.checkArgument(value != null, "Value must not be null");
+		});
+
+		try {
+			evictionLock.lock();
+
+			entries.forEach(this::_put);
+			maintain();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			evictionLock.lock();
+
+			Node<K, V> node = entries.get(key);
+			if (node == null) {
+				int weight = weigh(key, value);
+				if (weight > maximumWeight) { // Could never fit, so is rejected rather than evicting every other entry
+					onEviction(new Node<>(key, value, weight));
+
+					return;
+				}
+
+				node = new Node<>(key, value, weight);
+				entries.put(key, node);
+
+				onAccess(node);
+				maintain();
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		entries.forEach((key, node) -> {
+			builder.append(key);
+			builder.append("=");
+			builder.append(node.value);
+			builder.append(", ");
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the total weight of entries in this cache.
+	 * Equals the number of entries if this cache is bounded by the number of entries.
+	 *
+	 * @since 2.1
+	 */
+	public long weightedSize() {
+		try {
+			evictionLock.lock();
+
+			return windowDeque.weight() + probationDeque.weight() + protectedDeque.weight();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+
+	private void _put(K key, V value) {
+		int weight = weigh(key, value);
+
+		Node<K, V> node = entries.get(key);
+		if (weight > maximumWeight) { // Could never fit, so is rejected rather than evicting every other entry
+			if ((node != null) && entries.remove(key, node)) {
+				unlink(node);
+			}
+
+			onEviction(new Node<>(key, value, weight));
+
+			return;
+		}
+
+		if (node == null) {
+			node = new Node<>(key, value, weight);
+			entries.put(key, node);
+		} else {
+			node.value = value;
+			if ((weight > mainMaximum) && (node.queue != windowDeque)) { // Re-enters through the window, which rejects it without evicting any victims
+				unlink(node);
+			}
+			updateWeight(node, weight);
+		}
+
+		onAccess(node);
+	}
+
+	private void afterRead(Node<K, V> node) {
+		boolean drainRequired = readBuffer.offer(node);
+		if (drainRequired && evictionLock.tryLock()) {
+			try {
+				readBuffer.drainTo(this::onAccess);
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void afterWrite(Node<K, V> node) {
+		try {
+			evictionLock.lock();
+
+			onAccess(node);
+			maintain();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void demoteProtected() {
+		while (protectedDeque.weight() > protectedMaximum) {
+			probationDeque.addLast(protectedDeque.pollFirst());
+		}
+	}
+
+	private void evictEntries() {
+		while (windowDeque.weight() > windowMaximum) {
+			Node<K, V> candidate = windowDeque.pollFirst();
+			if (candidate.weight > mainMaximum) { // Could never fit in the main space, so must not evict any victims
+				if (entries.remove(candidate.key, candidate)) {
+					onEviction(candidate);
+				}
+
+				continue;
+			}
+
+			int candidateFrequency = frequencySketch.frequency(candidate.key);
+
+			// Make room for the candidate in the main space as long as it is used more frequently than the victims
+			while ((candidate != null) && ((probationDeque.weight() + protectedDeque.weight() + candidate.weight) > mainMaximum)) {
+				Node<K, V> victim = !probationDeque.isEmpty() ? probationDeque.peekFirst() : protectedDeque.peekFirst();
+				if ((victim != null) && (candidateFrequency > frequencySketch.frequency(victim.key))) {
+					removeEvicted(victim);
+				} else {
+					if (entries.remove(candidate.key, candidate)) {
+						onEviction(candidate);
+					}
+					candidate = null;
+				}
+			}
+
+			if (candidate != null) {
+				probationDeque.addLast(candidate);
+			}
+		}
+
+		// Entries reweighted in place may have pushed the main space over its maximum
+		demoteProtected();
+		while ((probationDeque.weight() + protectedDeque.weight()) > mainMaximum) {
+			removeEvicted(!probationDeque.isEmpty() ? probationDeque.peekFirst() : protectedDeque.peekFirst());
+		}
+	}
+
+	private void maintain() {
+		frequencySketch.ensureCapacity(entries.size());
+
+		readBuffer.drainTo(this::onAccess);
+
+		evictEntries();
+	}
+
+	private void onAccess(Node<K, V> node) {
+		if (entries.get(node.key) != node) { // Already removed
+			return;
+		}
+
+		frequencySketch.increment(node.key);
+
+		AccessOrderDeque<K, V> queue = node.queue;
+		if (queue == null) { // Added but not linked yet
+			windowDeque.addLast(node);
+		} else if (queue == probationDeque) {
+			probationDeque.remove(node);
+			protectedDeque.addLast(node);
+
+			demoteProtected();
+		} else {
+			queue.moveToLast(node);
+		}
+	}
+
+	private void onEviction(Node<K, V> node) {
+		statsCounter.recordEviction(RemovalCause.SIZE);
+
+		BiConsumer<? super K, ? super V> evictionListener = this.evictionListener;
+		if (evictionListener != null) {
+			evictionListener.accept(node.key, node.value);
+		}
+	}
+
+	// Intended for two-level caches only, neither records statistics nor counts as an access
+	V peek(K key) {
+		Node<K, V> node = entries.get(key);
+
+		return (node != null) ? node.value : null;
+	}
+
+	private void removeEvicted(Node<K, V> node) {
+		unlink(node);
+		if (entries.remove(node.key, node)) {
+			onEviction(node);
+		}
+	}
+
+	// Intended for two-level caches only
+	void setEvictionListener(BiConsumer<? super K, ? super V> evictionListener) {
+		this.evictionListener = evictionListener;
+	}
+
+	private void unlink(Node<K, V> node) {
+		if (node.queue != null) {
+			node.queue.remove(node);
+		}
+	}
+
+	private void updateWeight(Node<K, V> node, int weight) {
+		if (node.queue != null) {
+			node.queue.weight += weight - node.weight;
+		}
+
+		node.weight = weight;
+	}
+
+	private int weigh(K key, V value) {
+		int weight = weigher.weigh(key, value);
+		Contract.checkState(weight >= 0, "Weight must not be negative: {0}", weight);
+
+		return weight;
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class AccessOrderDeque<K, V> {
+
+		private Node<K, V> first;
+
+		private Node<K, V> last;
+
+		private long weight;
+
+
+		private void addLast(Node<K, V> node) {
+			node.queue = this;
+			node.previous = last;
+			node.next = null;
+
+			if (last == null) {
+				first = node;
+			} else {
+				last.next = node;
+			}
+			last = node;
+
+			weight += node.weight;
+		}
+
+		private void clear() {
+			for (Node<K, V> node = first; node != null; ) {
+				Node<K, V> next = node.next;
+
+				node.queue = null;
+				node.previous = null;
+				node.next = null;
+
+				node = next;
+			}
+
+			first = null;
+			last = null;
+			weight = 0L;
+		}
+
+		private boolean isEmpty() {
+			return (first == null);
+		}
+
+		private void moveToLast(Node<K, V> node) {
+			if (node != last) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		private Node<K, V> peekFirst() {
+			return first;
+		}
+
+		private Node<K, V> pollFirst() {
+			Node<K, V> node = first;
+			if (node != null) {
+				remove(node);
+			}
+
+			return node;
+		}
+
+		private void remove(Node<K, V> node) {
+			if (node.previous == null) {
+				first = node.next;
+			} else {
+				node.previous.next = node.next;
+			}
+
+			if (node.next == null) {
+				last = node.previous;
+			} else {
+				node.next.previous = node.previous;
+			}
+
+			node.queue = null;
+			node.previous = null;
+			node.next = null;
+
+			weight -= node.weight;
+		}
+
+		private long weight() {
+			return weight;
+		}
+
+	}
+
+	private static class Node<K, V> {
+
+		private final K key;
+
+		private Node<K, V> next;
+
+		private Node<K, V> previous;
+
+		private AccessOrderDeque<K, V> queue;
+
+		private volatile V value;
+
+		private int weight;
+
+
+		private Node(K key, V value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+
+	}
+
+}
@@ -15,9 +15,16 @@
  */
 package org.sellcom.core.util.cache;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalListener;
 
 /**
  * Generic cache.
@@ -81,6 +88,71 @@
 	 */
 	Optional<V> get(K key);
 
+	/**
+	 * Returns the values associated with the given keys in this cache.
+	 * Keys with no associated value are not present in the returned map.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null}
+	 * @throws IllegalArgumentException if any of {@code keys} is {@code null}
+	 *
+	 * @since 2.1
+	 *
+	 * @see #get(Object)
+	 */
+	default Map<K, V> getAll(Iterable<? extends K> keys) {
+		Contract.checkArgument(keys != null, "Keys must not be null");
+
+		Map<K, V> values = new LinkedHashMap<>();
+		for (K key : keys) {
+			Contract.checkArgument(key != null, "Key must not be null");
+
+			get(key).ifPresent(value -> values.put(key, value));
+		}
+
+		return values;
+	}
+
+	/**
+	 * Returns the values associated with the given keys in this cache.
+	 * Creates the missing values by applying the given mapping function to all the missing keys at once, and puts them in this cache.
+	 * Keys with no associated value, even after applying the mapping function, are not present in the returned map.
+	 *
+	 * @throws IllegalArgumentException if {@code keys} is {@code null}
+	 * @throws IllegalArgumentException if any of {@code keys} is {@code null}
+	 * @throws IllegalArgumentException if {@code batchMappingFunction} is {@code null}
+	 * @throws IllegalStateException if {@code batchMappingFunction} returns {@code null}
+	 *
+	 * @since 2.1
+	 */
+	default Map<K, V> getAll(Iterable<? extends K> keys, Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> batchMappingFunction) {
+		Contract.checkArgument(keys != null, "Keys must not be null");
+		Contract.checkArgument(batchMappingFunction != null, "Batch mapping function must not be null");
+
+		Map<K, V> values = new LinkedHashMap<>();
+
+		Set<K> missingKeys = CacheSupport.collectPresent(this, keys, values);
+		if (!missingKeys.isEmpty()) {
+			Map<K, V> loadedValues = CacheSupport.load(missingKeys, batchMappingFunction);
+			putAll(loadedValues);
+
+			CacheSupport.collectLoaded(missingKeys, loadedValues, values);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of this cache.
+	 * Returns empty statistics unless statistics are recorded.
+	 *
+	 * @since 2.1
+	 *
+	 * @see #setStatsCounter(StatsCounter)
+	 */
+	default CacheStats getStats() {
+		return CacheStats.empty();
+	}
+
 	/**
 	 * Returns the value associated with the given key in this cache.
 	 * Returns the given default value if this cache contains no entry with the key.
@@ -115,6 +187,23 @@
 	 */
 	void put(K key, V value);
 
+	/**
+	 * Creates entries with the given keys and values in this cache.
+	 * Overwrites the existing entries with the same keys, if any.
+	 *
+	 * @throws IllegalArgumentException if {@code entries} is {@code null}
+	 * @throws IllegalArgumentException if any of the keys or values in {@code entries} is {@code null}
+	 *
+	 * @since 2.1
+	 *
+	 * @see Map#putAll(Map)
+	 */
+	default void putAll(Map<? extends K, ? extends V> entries) {
+		Contract.checkArgument(entries != null, "Entries must not be null");
+
+		entries.forEach(this::put);
+	}
+
 	/**
 	 * Creates an entry with the given key and value in this cache only if no entry with the same key already exists.
 	 *
@@ -127,6 +216,35 @@
 	 */
 	void putIfAbsent(K key, V value);
 
+	/**
+	 * Starts notifying the given listener of the entries removed from this cache (optional operation).
+	 * Notifications are delivered in batches on the given executor, never while this cache is locked.
+	 * Replaces the previously set listener, if any.
+	 *
+	 * @throws IllegalArgumentException if {@code listener} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 * @throws UnsupportedOperationException if this cache does not support removal listeners
+	 *
+	 * @since 2.1
+	 */
+	default void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Starts recording the statistics of this cache using the given counter (optional operation).
+	 * Statistics are not recorded by default, so that caches do not pay for counters nobody reads.
+	 * Pass {@link StatsCounter#disabled()} to stop recording the statistics.
+	 *
+	 * @throws IllegalArgumentException if {@code statsCounter} is {@code null}
+	 * @throws UnsupportedOperationException if this cache does not support recording statistics
+	 *
+	 * @since 2.1
+	 */
+	default void setStatsCounter(StatsCounter statsCounter) {
+		throw new UnsupportedOperationException();
+	}
+
 	/**
 	 * Returns the number of entries in this cache.
 	 *
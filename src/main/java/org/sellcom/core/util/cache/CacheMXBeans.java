@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Operations with management beans of caches.
+ *
+ * @since 2.1
+ */
+public class CacheMXBeans {
+
+	private static final String DOMAIN = "org.sellcom.core";
+
+
+	private CacheMXBeans() {
+		// Utility class, not to be instantiated
+	}
+
+
+	/**
+	 * Registers a bean exposing the statistics of the given cache with the platform MBean server under the given name.
+	 * The statistics are read from the cache whenever the bean is queried.
+	 * Returns the name of the registered bean.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 * @throws IllegalArgumentException if {@code cacheName} is {@code null} or empty
+	 * @throws JMException if the bean cannot be registered, for example if a bean with the same name is already registered
+	 *
+	 * @since 2.1
+	 */
+	public static ObjectName registerStatsMXBean(Cache<?, ?> cache, String cacheName) throws JMException {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+		Contract.checkArgument((cacheName != null) && !cacheName.isEmpty(), "Cache name must not be null or empty");
+
+		ObjectName objectName = statsObjectName(cacheName);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheStatsBean(cache), objectName);
+
+		return objectName;
+	}
+
+	/**
+	 * Unregisters the bean exposing the statistics of the cache with the given name from the platform MBean server.
+	 *
+	 * @throws IllegalArgumentException if {@code cacheName} is {@code null} or empty
+	 * @throws JMException if the bean cannot be unregistered, for example if no bean with the name is registered
+	 *
+	 * @since 2.1
+	 */
+	public static void unregisterStatsMXBean(String cacheName) throws JMException {
+		Contract.checkArgument((cacheName != null) && !cacheName.isEmpty(), "Cache name must not be null or empty");
+
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsObjectName(cacheName));
+	}
+
+
+	private static ObjectName statsObjectName(String cacheName) throws JMException {
+		return new ObjectName(DOMAIN + ":type=CacheStats,name=" + ObjectName.quote(cacheName));
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class CacheStatsBean implements CacheStatsMXBean {
+
+		private final Cache<?, ?> cache;
+
+
+		private CacheStatsBean(Cache<?, ?> cache) {
+			this.cache = cache;
+		}
+
+
+		@Override
+		public double getAverageLoadPenalty() {
+			return cache.getStats().getAverageLoadPenalty();
+		}
+
+		@Override
+		public long getCollectedEvictionCount() {
+			return cache.getStats().getEvictionCount(RemovalCause.COLLECTED);
+		}
+
+		@Override
+		public long getEstimatedSize() {
+			return cache.size();
+		}
+
+		@Override
+		public long getEvictionCount() {
+			return cache.getStats().getEvictionCount();
+		}
+
+		@Override
+		public long getExpiredEvictionCount() {
+			return cache.getStats().getEvictionCount(RemovalCause.EXPIRED);
+		}
+
+		@Override
+		public long getExplicitEvictionCount() {
+			return cache.getStats().getEvictionCount(RemovalCause.EXPLICIT);
+		}
+
+		@Override
+		public long getHitCount() {
+			return cache.getStats().getHitCount();
+		}
+
+		@Override
+		public double getHitRate() {
+			return cache.getStats().getHitRate();
+		}
+
+		@Override
+		public long getLoadFailureCount() {
+			return cache.getStats().getLoadFailureCount();
+		}
+
+		@Override
+		public long getLoadSuccessCount() {
+			return cache.getStats().getLoadSuccessCount();
+		}
+
+		@Override
+		public long getMissCount() {
+			return cache.getStats().getMissCount();
+		}
+
+		@Override
+		public long getSizeEvictionCount() {
+			return cache.getStats().getEvictionCount(RemovalCause.SIZE);
+		}
+
+		@Override
+		public long getTotalLoadTime() {
+			return cache.getStats().getTotalLoadTime();
+		}
+
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.io.MoreFiles;
+
+/**
+ * Operations with cache snapshots.
+ * <p>
+ * A snapshot stores the entries of a cache in a file, so that the cache can be filled again after a restart instead of starting empty.
+ * Keys and values are converted to bytes by the given serializers.
+ * Snapshots are written and read through memory-mapped files, and are limited to 2 GiB.
+ * <p>
+ * Entries are serialized and deserialized in parallel; the cache itself is accessed by the calling thread only,
+ * so that snapshots can be taken of and loaded into caches which are not thread-safe.
+ *
+ * @since 2.1
+ */
+public class CacheSnapshots {
+
+	private static final int HEADER_LENGTH = 12;
+
+	private static final int MAGIC_NUMBER = 0x43534E50; // "CSNP"
+
+	private static final int VERSION = 1;
+
+
+	private CacheSnapshots() {
+		// Utility class, not to be instantiated
+	}
+
+
+	/**
+	 * Loads the entries from the given snapshot into the given cache.
+	 * Does not overwrite the entries already present in the cache.
+	 * Returns the number of entries in the snapshot.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 * @throws IllegalArgumentException if {@code snapshot} is {@code null}
+	 * @throws IllegalArgumentException if {@code keySerializer} is {@code null}
+	 * @throws IllegalArgumentException if {@code valueSerializer} is {@code null}
+	 * @throws IOException if an I/O error occurs or if {@code snapshot} is not a valid snapshot
+	 *
+	 * @since 2.1
+	 */
+	public static <K, V> int load(Cache<K, V> cache, Path snapshot, Serializer<? extends K> keySerializer, Serializer<? extends V> valueSerializer) throws IOException {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+		Contract.checkArgument(snapshot != null, "Snapshot must not be null");
+		Contract.checkArgument(keySerializer != null, "Key serializer must not be null");
+		Contract.checkArgument(valueSerializer != null, "Value serializer must not be null");
+
+		ByteBuffer buffer = map(snapshot);
+
+		int entryCount = buffer.getInt(8);
+		if ((entryCount < 0) || (entryCount > ((buffer.limit() - HEADER_LENGTH) / Long.BYTES))) {
+			throw new IOException("Invalid snapshot: " + snapshot);
+		}
+
+		Object[] keys = new Object[entryCount];
+		Object[] values = new Object[entryCount];
+		try {
+			IntStream.range(0, entryCount).parallel().forEach(index -> {
+				// Each thread needs its own buffer, since the position is changed while reading
+				ByteBuffer entryBuffer = buffer.duplicate();
+				entryBuffer.position(checkOffset(buffer, buffer.getLong(HEADER_LENGTH + (index * Long.BYTES))));
+
+				keys[index] = keySerializer.deserialize(readBytes(entryBuffer));
+				values[index] = valueSerializer.deserialize(readBytes(entryBuffer));
+			});
+		} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Invalid snapshot: " + snapshot, e);
+		}
+
+		for (int index = 0; index < entryCount; index++) {
+			if ((keys[index] != null) && (values[index] != null)) {
+				@SuppressWarnings("unchecked")
+				K key = (K) keys[index];
+				@SuppressWarnings("unchecked")
+				V value = (V) values[index];
+
+				cache.putIfAbsent(key, value);
+			}
+		}
+
+		return entryCount;
+	}
+
+	/**
+	 * Loads the entries from the given snapshot into the given cache asynchronously, using the given executor.
+	 * Does not overwrite the entries already present in the cache, so that the cache can be used while the snapshot is being loaded.
+	 * The returned future completes with the number of entries in the snapshot.
+	 * <p>
+	 * The cache must be thread-safe.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 * @throws IllegalArgumentException if {@code snapshot} is {@code null}
+	 * @throws IllegalArgumentException if {@code keySerializer} is {@code null}
+	 * @throws IllegalArgumentException if {@code valueSerializer} is {@code null}
+	 * @throws IllegalArgumentException if {@code executor} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public static <K, V> CompletableFuture<Integer> loadAsync(Cache<K, V> cache, Path snapshot, Serializer<? extends K> keySerializer, Serializer<? extends V> valueSerializer, Executor executor) {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+		Contract.checkArgument(snapshot != null, "Snapshot must not be null");
+		Contract.checkArgument(keySerializer != null, "Key serializer must not be null");
+		Contract.checkArgument(valueSerializer != null, "Value serializer must not be null");
+		Contract.checkArgument(executor != null, "Executor must not be null");
+
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return load(cache, snapshot, keySerializer, valueSerializer);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Saves the entries of the given cache to the given snapshot.
+	 * Replaces the snapshot atomically, if supported by the file system, so that a partially written snapshot is never loaded.
+	 * Returns the number of saved entries.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 * @throws IllegalArgumentException if {@code snapshot} is {@code null}
+	 * @throws IllegalArgumentException if {@code keySerializer} is {@code null}
+	 * @throws IllegalArgumentException if {@code valueSerializer} is {@code null}
+	 * @throws IOException if an I/O error occurs or if the snapshot would be larger than 2 GiB
+	 *
+	 * @since 2.1
+	 */
+	public static <K, V> int save(Cache<K, V> cache, Path snapshot, Serializer<? super K> keySerializer, Serializer<? super V> valueSerializer) throws IOException {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+		Contract.checkArgument(snapshot != null, "Snapshot must not be null");
+		Contract.checkArgument(keySerializer != null, "Key serializer must not be null");
+		Contract.checkArgument(valueSerializer != null, "Value serializer must not be null");
+
+		// Entries are only collected while iterating, so that concurrent caches are not locked during serialization
+		List<Map.Entry<K, V>> entries = new ArrayList<>();
+		cache.forEach((key, value) -> entries.add(Map.entry(key, value)));
+
+		byte[][] serializedKeys = new byte[entries.size()][];
+		byte[][] serializedValues = new byte[entries.size()][];
+		IntStream.range(0, entries.size()).parallel().forEach(index -> {
+			serializedKeys[index] = keySerializer.serialize(entries.get(index).getKey());
+			serializedValues[index] = valueSerializer.serialize(entries.get(index).getValue());
+		});
+
+		long[] offsets = new long[entries.size()];
+		long length = HEADER_LENGTH + ((long) entries.size() * Long.BYTES);
+		for (int index = 0; index < entries.size(); index++) {
+			offsets[index] = length;
+			length += Integer.BYTES + serializedKeys[index].length + Integer.BYTES + serializedValues[index].length;
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot is too large: " + length + " bytes");
+		}
+
+		MoreFiles.ensureParentDirectory(snapshot.toAbsolutePath());
+
+		Path temporaryFile = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+		Files.deleteIfExists(temporaryFile);
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryFile, CREATE_NEW, READ, WRITE)) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0L, length);
+				buffer.putInt(MAGIC_NUMBER);
+				buffer.putInt(VERSION);
+				buffer.putInt(entries.size());
+				for (long offset : offsets) {
+					buffer.putLong(offset);
+				}
+				for (int index = 0; index < entries.size(); index++) {
+					buffer.putInt(serializedKeys[index].length);
+					buffer.put(serializedKeys[index]);
+					buffer.putInt(serializedValues[index].length);
+					buffer.put(serializedValues[index]);
+				}
+				buffer.force();
+			}
+
+			try {
+				Files.move(temporaryFile, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, snapshot, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+
+		return entries.size();
+	}
+
+
+	private static int checkOffset(ByteBuffer buffer, long offset) {
+		Contract.checkArgument((offset >= HEADER_LENGTH) && (offset < buffer.limit()), "Invalid offset: {0}", offset);
+
+		return (int) offset;
+	}
+
+	private static ByteBuffer map(Path snapshot) throws IOException {
+		try (FileChannel channel = FileChannel.open(snapshot, READ)) {
+			long size = channel.size();
+			if ((size < HEADER_LENGTH) || (size > Integer.MAX_VALUE)) {
+				throw new IOException("Invalid snapshot: " + snapshot);
+			}
+
+			// The mapping remains valid after the channel is closed
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0L, size);
+			if ((buffer.getInt(0) != MAGIC_NUMBER) || (buffer.getInt(4) != VERSION)) {
+				throw new IOException("Invalid snapshot: " + snapshot);
+			}
+
+			return buffer;
+		}
+	}
+
+	private static ByteBuffer readBytes(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		Contract.checkArgument((length >= 0) && (length <= buffer.remaining()), "Invalid length: {0}", length);
+
+		ByteBuffer bytes = buffer.slice();
+		bytes.limit(length);
+		buffer.position(buffer.position() + length);
+
+		return bytes.asReadOnlyBuffer();
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Immutable snapshot of cache statistics.
+ *
+ * @since 2.1
+ *
+ * @see StatsCounter
+ */
+public final class CacheStats {
+
+	private static final CacheStats EMPTY = new CacheStats(0L, 0L, 0L, 0L, 0L, new long[RemovalCause.values().length]);
+
+	private final long[] evictionCounts;
+
+	private final long hitCount;
+
+	private final long loadFailureCount;
+
+	private final long loadSuccessCount;
+
+	private final long missCount;
+
+	private final long totalLoadTime;
+
+
+	/**
+	 * Creates a snapshot with the given counts.
+	 * The eviction counts are indexed by the ordinals of the removal causes, and are zero for the causes which are not evictions.
+	 *
+	 * @throws IllegalArgumentException if any count is negative
+	 * @throws IllegalArgumentException if {@code totalLoadTime} is negative
+	 * @throws IllegalArgumentException if {@code evictionCounts} is {@code null}
+	 * @throws IllegalArgumentException if the length of {@code evictionCounts} differs from the number of removal causes
+	 * @throws IllegalArgumentException if {@code evictionCounts} counts a cause which is not an eviction
+	 *
+	 * @since 2.1
+	 */
+	public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime, long[] evictionCounts) {
+		Contract.checkArgument(hitCount >= 0L, "Hit count must not be negative: {0}", hitCount);
+		Contract.checkArgument(missCount >= 0L, "Miss count must not be negative: {0}", missCount);
+		Contract.checkArgument(loadSuccessCount >= 0L, "Load success count must not be negative: {0}", loadSuccessCount);
+		Contract.checkArgument(loadFailureCount >= 0L, "Load failure count must not be negative: {0}", loadFailureCount);
+		Contract.checkArgument(totalLoadTime >= 0L, "Total load time must not be negative: {0}", totalLoadTime);
+		Contract.checkArgument(evictionCounts != null, "Eviction counts must not be null");
+		Contract.checkArgument(evictionCounts.length == RemovalCause.values().length, "Eviction counts must have one count per removal cause: {0}", evictionCounts.length);
+		for (RemovalCause cause : RemovalCause.values()) {
+			long evictionCount = evictionCounts[cause.ordinal()];
+			Contract.checkArgument(evictionCount >= 0L, "Eviction count must not be negative: {0}", evictionCount);
+			Contract.checkArgument(cause.isEviction() || (evictionCount == 0L), "Removal cause is not an eviction: {0}", cause);
+		}
+
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCounts = evictionCounts.clone();
+	}
+
+
+	/**
+	 * Returns a snapshot with all counts equal to zero.
+	 *
+	 * @since 2.1
+	 */
+	public static CacheStats empty() {
+		return EMPTY;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CacheStats)) {
+			return false;
+		}
+
+		CacheStats otherStats = (CacheStats) other;
+
+		return (hitCount == otherStats.hitCount)
+			&& (missCount == otherStats.missCount)
+			&& (loadSuccessCount == otherStats.loadSuccessCount)
+			&& (loadFailureCount == otherStats.loadFailureCount)
+			&& (totalLoadTime == otherStats.totalLoadTime)
+			&& Arrays.equals(evictionCounts, otherStats.evictionCounts);
+	}
+
+	/**
+	 * Returns the average time in nanoseconds spent loading a value, or zero if no values have been loaded.
+	 *
+	 * @since 2.1
+	 */
+	public double getAverageLoadPenalty() {
+		long loadCount = getLoadCount();
+
+		return (loadCount == 0L) ? 0.0 : ((double) totalLoadTime / loadCount);
+	}
+
+	/**
+	 * Returns the number of removed entries.
+	 *
+	 * @since 2.1
+	 */
+	public long getEvictionCount() {
+		return Arrays.stream(evictionCounts).sum();
+	}
+
+	/**
+	 * Returns the number of entries removed for the given cause.
+	 *
+	 * @throws IllegalArgumentException if {@code cause} is {@code null}
+	 * @throws IllegalArgumentException if {@code cause} is not an eviction
+	 *
+	 * @since 2.1
+	 */
+	public long getEvictionCount(RemovalCause cause) {
+		Contract.checkArgument(cause != null, "Cause must not be null");
+		Contract.checkArgument(cause.isEviction(), "Removal cause is not an eviction: {0}", cause);
+
+		return evictionCounts[cause.ordinal()];
+	}
+
+	/**
+	 * Returns the number of lookups that found a value.
+	 *
+	 * @since 2.1
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the ratio of lookups that found a value, or one if there have been no lookups.
+	 *
+	 * @since 2.1
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+
+		return (requestCount == 0L) ? 1.0 : ((double) hitCount / requestCount);
+	}
+
+	/**
+	 * Returns the number of attempts to load a value.
+	 *
+	 * @since 2.1
+	 */
+	public long getLoadCount() {
+		return loadSuccessCount + loadFailureCount;
+	}
+
+	/**
+	 * Returns the number of loads that failed or produced no value.
+	 *
+	 * @since 2.1
+	 */
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * Returns the number of loads that produced a value.
+	 *
+	 * @since 2.1
+	 */
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	/**
+	 * Returns the number of lookups that found no value.
+	 *
+	 * @since 2.1
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of lookups.
+	 *
+	 * @since 2.1
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * Returns the total time in nanoseconds spent loading values.
+	 *
+	 * @since 2.1
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(hitCount) + (31 * Long.hashCode(missCount)) + (31 * 31 * Long.hashCode(getLoadCount())) + Arrays.hashCode(evictionCounts);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("CacheStats[");
+		builder.append("hitCount=").append(hitCount);
+		builder.append(", missCount=").append(missCount);
+		builder.append(", loadSuccessCount=").append(loadSuccessCount);
+		builder.append(", loadFailureCount=").append(loadFailureCount);
+		builder.append(", totalLoadTime=").append(totalLoadTime);
+		for (RemovalCause cause : RemovalCause.values()) {
+			if (!cause.isEviction()) {
+				continue;
+			}
+
+			builder.append(", ").append(cause.name().toLowerCase(Locale.ROOT)).append("EvictionCount=").append(evictionCounts[cause.ordinal()]);
+		}
+		builder.append("]");
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+/**
+ * Management interface exposing the statistics of a cache.
+ *
+ * @since 2.1
+ *
+ * @see CacheMXBeans
+ */
+public interface CacheStatsMXBean {
+
+	/**
+	 * @since 2.1
+	 */
+	double getAverageLoadPenalty();
+
+	/**
+	 * @since 2.1
+	 */
+	long getCollectedEvictionCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getEstimatedSize();
+
+	/**
+	 * @since 2.1
+	 */
+	long getEvictionCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getExpiredEvictionCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getExplicitEvictionCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getHitCount();
+
+	/**
+	 * @since 2.1
+	 */
+	double getHitRate();
+
+	/**
+	 * @since 2.1
+	 */
+	long getLoadFailureCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getLoadSuccessCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getMissCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getSizeEvictionCount();
+
+	/**
+	 * @since 2.1
+	 */
+	long getTotalLoadTime();
+
+}
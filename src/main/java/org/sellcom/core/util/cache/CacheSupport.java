@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+
+class CacheSupport {
+
+	private CacheSupport() {
+		// Utility class, not to be instantiated
+	}
+
+
+	static <K, V> void collectLoaded(Set<K> requestedKeys, Map<K, V> loadedValues, Map<K, V> values) {
+		for (K key : requestedKeys) {
+			V value = loadedValues.get(key);
+			if (value != null) {
+				values.replace(key, value);
+			} else {
+				values.remove(key);
+			}
+		}
+	}
+
+	static <K, V> Set<K> collectPresent(Cache<K, V> cache, Iterable<? extends K> keys, Map<K, V> values) {
+		Set<K> missingKeys = new LinkedHashSet<>();
+		for (K key : keys) {
+			Contract.checkArgument(key != null, "Key must not be null");
+
+			V value = cache.getOrDefault(key, null);
+			if (value != null) {
+				values.put(key, value);
+			} else if (missingKeys.add(key)) {
+				values.put(key, null); // Keeps the position of the key until the value is loaded
+			}
+		}
+
+		return missingKeys;
+	}
+
+	static <K, V> Map<K, V> load(Set<K> missingKeys, Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> batchMappingFunction) {
+		Map<? extends K, ? extends V> loadedValues = batchMappingFunction.apply(Collections.unmodifiableSet(missingKeys));
+		Contract.checkState(loadedValues != null, "Batch mapping function must not return null");
+
+		// Entries with null keys or values cannot be cached
+		Map<K, V> validValues = new LinkedHashMap<>();
+		loadedValues.forEach((key, value) -> {
+			if ((key != null) && (value != null)) {
+				validValues.put(key, value);
+			}
+		});
+
+		return validValues;
+	}
+
+	static <K, V> V loadValue(K key, Function<K, V> mappingFunction, StatsCounter statsCounter) {
+		long startTime = System.nanoTime();
+
+		V value;
+		try {
+			value = mappingFunction.apply(key);
+		} catch (RuntimeException | Error e) {
+			statsCounter.recordLoadFailure(System.nanoTime() - startTime);
+
+			throw e;
+		}
+
+		if (value != null) {
+			statsCounter.recordLoadSuccess(System.nanoTime() - startTime);
+		} else {
+			statsCounter.recordLoadFailure(System.nanoTime() - startTime);
+		}
+
+		return value;
+	}
+
+}
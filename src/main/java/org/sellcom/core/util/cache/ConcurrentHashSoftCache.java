@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Thread-safe unbounded cache with soft-referenced values.
+ * <p>
+ * Unlike {@link ConcurrentSoftCache}, reads do not block and writes only contend for entries with colliding keys.
+ * When a mapping function is used, concurrent requests for the same missing key apply the function only once,
+ * while the other requesting threads wait for its result.
+ * The mapping function should therefore be short and must not modify this cache.
+ *
+ * @since 2.1
+ */
+public final class ConcurrentHashSoftCache<K, V> implements Cache<K, V> {
+
+	private final ConcurrentMap<K, KeyedSoftReference<K, V>> entries = new ConcurrentHashMap<>();
+
+	private final Function<K, V> mappingFunction;
+
+	private final ReferenceQueue<V> staleReferences = new ReferenceQueue<>();
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values.
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentHashSoftCache() {
+		this.mappingFunction = null;
+	}
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values that uses the given mapping function to create values from keys.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentHashSoftCache(Function<K, V> mappingFunction) {
+		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
+
+		this.mappingFunction = mappingFunction;
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		expungeStaleReferences();
+
+		if (entries.remove(key) != null) {
+			statsCounter.recordEviction(RemovalCause.EXPLICIT);
+		}
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		expungeStaleReferences();
+
+		// NOTE: Do not delegate to entries.remove(K, SoftReference<V>)
+		// to avoid comparing references using identity.
+
+		entries.computeIfPresent(key, (currentKey, currentReference) -> {
+			if (Objects.equals(currentReference.get(), value)) {
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+
+				return null;
+			}
+
+			return currentReference;
+		});
+	}
+
+	@Override
+	public void evictAll() {
+		expungeStaleReferences();
+
+		entries.keySet().removeIf(key -> {
+			statsCounter.recordEviction(RemovalCause.EXPLICIT);
+
+			return true;
+		});
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		expungeStaleReferences();
+
+		entries.forEach((currentKey, currentReference) -> {
+			V currentValue = currentReference.get();
+			if (currentValue != null) {
+				action.accept(currentKey, currentValue);
+			}
+		});
+	}
+
+	@Override
+	public Optional<V> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		expungeStaleReferences();
+
+		SoftReference<V> softReference = entries.get(key);
+		V value = (softReference != null) ? softReference.get() : null;
+		if (value != null) {
+			statsCounter.recordHits(1);
+
+			return Optional.of(value);
+		}
+
+		statsCounter.recordMisses(1);
+
+		if (mappingFunction == null) {
+			return Optional.empty();
+		}
+
+		// Mapping not present or expired: the value is kept strongly reachable
+		// until returned, so that it cannot be collected right after loading.
+		Object[] loadedValue = new Object[1];
+		entries.compute(key, (currentKey, currentReference) -> {
+			V currentValue = (currentReference != null) ? currentReference.get() : null;
+			if (currentValue != null) { // Loaded by another thread meanwhile
+				loadedValue[0] = currentValue;
+
+				return currentReference;
+			}
+
+			V newValue = CacheSupport.loadValue(currentKey, mappingFunction, statsCounter);
+			loadedValue[0] = newValue;
+
+			return (newValue != null) ? new KeyedSoftReference<>(staleReferences, currentKey, newValue) : null;
+		});
+
+		@SuppressWarnings("unchecked")
+		V result = (V) loadedValue[0];
+
+		return Optional.ofNullable(result);
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		expungeStaleReferences();
+
+		SoftReference<V> softReference = entries.get(key);
+		if (softReference == null) { // Mapping not present
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		V value = softReference.get();
+		if (value == null) { // Mapping expired
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		statsCounter.recordHits(1);
+
+		return value;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		expungeStaleReferences();
+
+		return entries.isEmpty();
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		expungeStaleReferences();
+
+		entries.put(key, new KeyedSoftReference<>(staleReferences, key, value));
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		expungeStaleReferences();
+
+		entries.compute(key, (currentKey, currentReference) -> {
+			if ((currentReference != null) && (currentReference.get() != null)) {
+				return currentReference;
+			}
+
+			return new KeyedSoftReference<>(staleReferences, currentKey, value);
+		});
+	}
+
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
+	@Override
+	public int size() {
+		expungeStaleReferences();
+
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		expungeStaleReferences();
+
+		StringBuilder builder = new StringBuilder("{");
+		entries.forEach((key, reference) -> {
+			V value = reference.get();
+			if (value != null) {
+				builder.append(key);
+				builder.append("=");
+				builder.append(value);
+				builder.append(", ");
+			}
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private void expungeStaleReferences() {
+		KeyedSoftReference<K, V> reference;
+		while ((reference = (KeyedSoftReference<K, V>) staleReferences.poll()) != null) {
+			// Only remove the mapping if it has not been replaced meanwhile
+			if (entries.remove(reference.getKey(), reference)) {
+				statsCounter.recordEviction(RemovalCause.COLLECTED);
+			}
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class KeyedSoftReference<K, V> extends SoftReference<V> {
+
+		private final K key;
+
+
+		private KeyedSoftReference(ReferenceQueue<? super V> staleReferences, K key, V value) {
+			super(value, staleReferences);
+
+			this.key = key;
+		}
+
+
+		private K getKey() {
+			return key;
+		}
+
+	}
+
+}
@@ -15,7 +15,11 @@
  */
 package org.sellcom.core.util.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
@@ -25,6 +29,9 @@
 
 /**
  * Thread-safe unbounded cache with soft-referenced values.
+ * <p>
+ * All operations are serialized using a single read/write lock.
+ * Consider using {@link ConcurrentHashSoftCache} or {@link SegmentedCache} if the cache is accessed by many threads.
  *
  * @since 1.3
  */
@@ -34,6 +41,8 @@
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
+	private final boolean loading;
+
 
 	/**
 	 * Creates an unbounded cache with soft-referenced values.
@@ -42,6 +51,19 @@
 	 */
 	public ConcurrentSoftCache() {
 		entries = new SoftCache<>();
+		loading = false;
+	}
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values, removing reclaimed entries according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code expungePolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentSoftCache(ExpungePolicy expungePolicy) {
+		entries = new SoftCache<>(expungePolicy);
+		loading = false;
 	}
 
 	/**
@@ -55,6 +77,21 @@ public ConcurrentSoftCache(Function<K, V> mappingFunction) {
 		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
 
 		entries = new SoftCache<>(mappingFunction);
+		loading = true;
+	}
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values that uses the given mapping function to create values from keys,
+	 * removing reclaimed entries according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 * @throws IllegalArgumentException if {@code expungePolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentSoftCache(Function<K, V> mappingFunction, ExpungePolicy expungePolicy) {
+		entries = new SoftCache<>(mappingFunction, expungePolicy);
+		loading = true;
 	}
 
 
@@ -115,13 +152,58 @@ public void forEach(BiConsumer<? super K, ? super V> action) {
 
 	@Override
 	public Optional<V> get(K key) {
+		// NOTE: Loading a missing value modifies the underlying cache,
+		// so the read lock is not sufficient when a mapping function is used.
+
+		Lock effectiveLock = loading ? lock.writeLock() : lock.readLock();
 		try {
-			lock.readLock().lock();
+			effectiveLock.lock();
 
 			return entries.get(key);
+		} finally {
+			effectiveLock.unlock();
+		}
+	}
+
+	@Override
+	public Map<K, V> getAll(Iterable<? extends K> keys) {
+		Lock effectiveLock = loading ? lock.writeLock() : lock.readLock();
+		try {
+			effectiveLock.lock();
+
+			return entries.getAll(keys);
+		} finally {
+			effectiveLock.unlock();
+		}
+	}
+
+	@Override
+	public Map<K, V> getAll(Iterable<? extends K> keys, Function<? super Set<K>, ? extends Map<? extends K, ? extends V>> batchMappingFunction) {
+		Contract.checkArgument(keys != null, "Keys must not be null");
+		Contract.checkArgument(batchMappingFunction != null, "Batch mapping function must not be null");
+
+		Map<K, V> values = new LinkedHashMap<>();
+
+		Set<K> missingKeys;
+		try {
+			lock.readLock().lock();
+
+			missingKeys = CacheSupport.collectPresent(entries, keys, values);
 		} finally {
 			lock.readLock().unlock();
 		}
+
+		// NOTE: Missing values are loaded without holding the lock,
+		// so that a slow batch mapping function does not block other threads.
+
+		if (!missingKeys.isEmpty()) {
+			Map<K, V> loadedValues = CacheSupport.load(missingKeys, batchMappingFunction);
+			putAll(loadedValues);
+
+			CacheSupport.collectLoaded(missingKeys, loadedValues, values);
+		}
+
+		return values;
 	}
 
 	@Override
@@ -135,6 +217,11 @@ public V getOrDefault(K key, V defaultValue) {
 		}
 	}
 
+	@Override
+	public CacheStats getStats() {
+		return entries.getStats();
+	}
+
 	@Override
 	public int hashCode() {
 		try {
@@ -168,6 +255,17 @@ public void put(K key, V value) {
 		}
 	}
 
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		try {
+			lock.writeLock().lock();
+
+			this.entries.putAll(entries);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
 	@Override
 	public void putIfAbsent(K key, V value) {
 		try {
@@ -179,6 +277,11 @@ public void putIfAbsent(K key, V value) {
 		}
 	}
 
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		entries.setStatsCounter(statsCounter);
+	}
+
 	@Override
 	public int size() {
 		try {
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Thread-safe recorder of cache statistics.
+ * <p>
+ * Counters are striped across threads, so that recording does not contend even when the cache is accessed by many threads.
+ * Snapshots taken while statistics are being recorded are not atomic.
+ *
+ * @since 2.1
+ */
+public final class ConcurrentStatsCounter implements StatsCounter {
+
+	private final LongAdder[] evictionCounts = new LongAdder[RemovalCause.values().length];
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder loadFailureCount = new LongAdder();
+
+	private final LongAdder loadSuccessCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder totalLoadTime = new LongAdder();
+
+
+	/**
+	 * Creates a recorder of cache statistics.
+	 *
+	 * @since 2.1
+	 */
+	public ConcurrentStatsCounter() {
+		for (int i = 0; i < evictionCounts.length; i++) {
+			evictionCounts[i] = new LongAdder();
+		}
+	}
+
+
+	/**
+	 * @throws IllegalArgumentException if {@code cause} is {@code null}
+	 * @throws IllegalArgumentException if {@code cause} is not an eviction
+	 */
+	@Override
+	public void recordEviction(RemovalCause cause) {
+		Contract.checkArgument(cause != null, "Cause must not be null");
+		Contract.checkArgument(cause.isEviction(), "Removal cause is not an eviction: {0}", cause);
+
+		evictionCounts[cause.ordinal()].increment();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code cause} is {@code null}
+	 * @throws IllegalArgumentException if {@code cause} is not an eviction
+	 */
+	@Override
+	public void recordEvictions(RemovalCause cause, int count) {
+		Contract.checkArgument(cause != null, "Cause must not be null");
+		Contract.checkArgument(cause.isEviction(), "Removal cause is not an eviction: {0}", cause);
+
+		evictionCounts[cause.ordinal()].add(count);
+	}
+
+	@Override
+	public void recordHits(int count) {
+		hitCount.add(count);
+	}
+
+	@Override
+	public void recordLoadFailure(long loadTime) {
+		loadFailureCount.increment();
+		totalLoadTime.add(loadTime);
+	}
+
+	@Override
+	public void recordLoadSuccess(long loadTime) {
+		loadSuccessCount.increment();
+		totalLoadTime.add(loadTime);
+	}
+
+	@Override
+	public void recordMisses(int count) {
+		missCount.add(count);
+	}
+
+	@Override
+	public CacheStats snapshot() {
+		long[] evictionCountSnapshot = new long[evictionCounts.length];
+		for (int i = 0; i < evictionCounts.length; i++) {
+			evictionCountSnapshot[i] = evictionCounts[i].sum();
+		}
+
+		return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadTime.sum(), evictionCountSnapshot);
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+}
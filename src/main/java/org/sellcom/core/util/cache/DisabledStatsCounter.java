@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import org.sellcom.core.util.RemovalCause;
+
+enum DisabledStatsCounter implements StatsCounter {
+
+	INSTANCE;
+
+
+	@Override
+	public void recordEviction(RemovalCause cause) {
+		// Do nothing
+	}
+
+	@Override
+	public void recordEvictions(RemovalCause cause, int count) {
+		// Do nothing
+	}
+
+	@Override
+	public void recordHits(int count) {
+		// Do nothing
+	}
+
+	@Override
+	public void recordLoadFailure(long loadTime) {
+		// Do nothing
+	}
+
+	@Override
+	public void recordLoadSuccess(long loadTime) {
+		// Do nothing
+	}
+
+	@Override
+	public void recordMisses(int count) {
+		// Do nothing
+	}
+
+	@Override
+	public CacheStats snapshot() {
+		return CacheStats.empty();
+	}
+
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.internal.collection.TimerWheel;
+import org.sellcom.core.internal.util.RemovalNotifier;
+import org.sellcom.core.util.CoarseClock;
+import org.sellcom.core.util.ExpiryPolicy;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalListener;
+
+/**
+ * Thread-safe unbounded cache with entries expiring after a fixed time.
+ * <p>
+ * Expired entries are never returned.
+ * They are removed by a hierarchical timer wheel, which is advanced as a side effect of the cache operations
+ * at a cost independent of the number of entries.
+ * Until removed, recently expired entries may still be counted by {@link #size()}.
+ * <p>
+ * Reads do not block. Extending the expiry of entries on access does not require any locking either.
+ * <p>
+ * Supports {@linkplain #setRemovalListener(RemovalListener, Executor) removal listeners}.
+ *
+ * @since 2.1
+ */
+public final class ExpiringCache<K, V> implements Cache<K, V> {
+
+	private volatile Clock clock = CoarseClock.getDefault();
+
+	private final ConcurrentMap<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+
+	private final ExpiryPolicy expiryPolicy;
+
+	private final ReentrantLock expiryLock = new ReentrantLock();
+
+	private TimerWheel<K> expiryTimeline;
+
+	private volatile long maintenanceTime;
+
+	private volatile RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+	private final Function<K, V> mappingFunction;
+
+	private final long timeToLive; // Milliseconds
+
+
+	/**
+	 * Creates an unbounded cache with entries expiring after the given time according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if {@code expiryPolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ExpiringCache(long timeToLive, TimeUnit unit, ExpiryPolicy expiryPolicy) {
+		this(timeToLive, unit, expiryPolicy, null, false);
+	}
+
+	/**
+	 * Creates an unbounded cache with entries expiring after the given time according to the given policy
+	 * that uses the given mapping function to create values from keys.
+	 *
+	 * @throws IllegalArgumentException if {@code timeToLive} is negative
+	 * @throws IllegalArgumentException if {@code unit} is {@code null}
+	 * @throws IllegalArgumentException if {@code expiryPolicy} is {@code null}
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public ExpiringCache(long timeToLive, TimeUnit unit, ExpiryPolicy expiryPolicy, Function<K, V> mappingFunction) {
+		this(timeToLive, unit, expiryPolicy, mappingFunction, true);
+	}
+
+	private ExpiringCache(long timeToLive, TimeUnit unit, ExpiryPolicy expiryPolicy, Function<K, V> mappingFunction, boolean loading) {
+		Contract.checkArgument(timeToLive >= 0L, "Time to live must not be negative: {0}", timeToLive);
+		Contract.checkArgument(unit != null, "Unit must not be null");
+		Contract.checkArgument(expiryPolicy != null, "Expiry policy must not be null");
+		Contract.checkArgument(!loading || (mappingFunction != null), "Mapping function must not be null");
+
+		this.timeToLive = unit.toMillis(timeToLive);
+		this.expiryPolicy = expiryPolicy;
+		this.mappingFunction = mappingFunction;
+
+		maintenanceTime = clock.millis();
+		expiryTimeline = new TimerWheel<>(maintenanceTime);
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			Node<K, V> node = entries.remove(key);
+			if (node != null) {
+				expiryTimeline.deschedule(node);
+
+				RemovalCause cause = node.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT;
+				statsCounter.recordEviction(cause);
+				removalNotifier.enqueue(key, node.value, cause);
+			}
+
+			expireEntries(now);
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			Node<K, V> node = entries.get(key);
+			if ((node != null) && !node.isExpired(now) && Objects.equals(node.value, value)) {
+				entries.remove(key, node);
+				expiryTimeline.deschedule(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+				removalNotifier.enqueue(key, node.value, RemovalCause.EXPLICIT);
+			}
+
+			expireEntries(now);
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public void evictAll() {
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			entries.values().removeIf(node -> {
+				RemovalCause cause = node.isExpired(now) ? RemovalCause.EXPIRED : RemovalCause.EXPLICIT;
+				statsCounter.recordEviction(cause);
+				removalNotifier.enqueue(node.getValue(), node.value, cause);
+
+				return true;
+			});
+			expiryTimeline.clear();
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		long now = clock.millis();
+		afterRead(now);
+
+		entries.forEach((currentKey, currentNode) -> {
+			if (!currentNode.isExpired(now)) {
+				action.accept(currentKey, currentNode.value);
+			}
+		});
+	}
+
+	@Override
+	public Optional<V> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		long now = clock.millis();
+
+		Node<K, V> node = entries.get(key);
+		if ((node != null) && !node.isExpired(now)) {
+			statsCounter.recordHits(1);
+			onAccess(node, now);
+			afterRead(now);
+
+			return Optional.of(node.value);
+		}
+
+		statsCounter.recordMisses(1);
+
+		if (mappingFunction == null) {
+			afterRead(now);
+
+			return Optional.empty();
+		}
+
+		// Loading does not hold the expiry lock, so the notifier may be replaced meanwhile and has to be dispatched explicitly
+		RemovalNotifier<K, V> notifier = removalNotifier;
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Node<K, V>[] createdNode = new Node[1];
+		node = entries.compute(key, (currentKey, currentNode) -> {
+			if ((currentNode != null) && !currentNode.isExpired(now)) { // Loaded by another thread meanwhile
+				return currentNode;
+			}
+
+			V value = CacheSupport.loadValue(currentKey, mappingFunction, statsCounter);
+			if (currentNode != null) { // Expired, not removed yet
+				statsCounter.recordEviction(RemovalCause.EXPIRED);
+				notifier.enqueue(currentKey, currentNode.value, RemovalCause.EXPIRED);
+			}
+			if (value == null) {
+				return null;
+			}
+
+			createdNode[0] = new Node<>(currentKey, value, deadline(now));
+
+			return createdNode[0];
+		});
+
+		notifier.dispatch();
+
+		if (node == null) {
+			afterRead(now);
+
+			return Optional.empty();
+		}
+
+		if (node == createdNode[0]) {
+			afterWrite(node, now);
+		} else {
+			onAccess(node, now);
+			afterRead(now);
+		}
+
+		return Optional.of(node.value);
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		long now = clock.millis();
+		afterRead(now);
+
+		Node<K, V> node = entries.get(key);
+		if ((node == null) || node.isExpired(now)) {
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		statsCounter.recordHits(1);
+		onAccess(node, now);
+
+		return node.value;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			expireEntries(now);
+			_put(key, value, now);
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		Contract.checkArgument(entries != null, "Entries must not be null");
+
+		entries.forEach((key, value) -> {
+			Contract.checkArgument(key != null, "Key must not be null");
+			Contract.checkArgument(value != null, "Value must not be null");
+		});
+
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			expireEntries(now);
+			entries.forEach((key, value) -> _put(key, value, now));
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			expiryLock.lock();
+
+			long now = clock.millis();
+
+			expireEntries(now);
+
+			Node<K, V> node = entries.get(key);
+			if ((node == null) || node.isExpired(now)) {
+				_put(key, value, now);
+			}
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	/**
+	 * Sets the clock determining when the entries of this cache expire, the {@linkplain CoarseClock#getDefault() default coarse clock} unless set otherwise.
+	 * The deadlines already set are kept.
+	 *
+	 * @throws IllegalArgumentException if {@code clock} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void setClock(Clock clock) {
+		Contract.checkArgument(clock != null, "Clock must not be null");
+
+		try {
+			expiryLock.lock();
+
+			this.clock = clock;
+
+			// The time of the wheel cannot move backwards, so the wheel has to be rebuilt
+			long now = clock.millis();
+			if (now < expiryTimeline.getCurrentTime()) {
+				maintenanceTime = now;
+				expiryTimeline = new TimerWheel<>(now);
+				entries.values().forEach(expiryTimeline::schedule);
+			}
+		} finally {
+			expiryLock.unlock();
+		}
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<K, V> listener, Executor executor) {
+		RemovalNotifier<K, V> notifier = new RemovalNotifier<>(listener, executor);
+
+		// Swapped under the lock, so that nothing is enqueued to the previous notifier once it has been dispatched below
+		RemovalNotifier<K, V> previousNotifier;
+		try {
+			expiryLock.lock();
+
+			previousNotifier = removalNotifier;
+			removalNotifier = notifier;
+		} finally {
+			expiryLock.unlock();
+		}
+
+		// Delivers the notifications left over by the previous listener
+		previousNotifier.dispatch();
+	}
+
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
+	@Override
+	public int size() {
+		int size;
+		try {
+			expiryLock.lock();
+
+			expireEntries(clock.millis());
+
+			size = entries.size();
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		long now = clock.millis();
+
+		StringBuilder builder = new StringBuilder("{");
+		entries.forEach((key, node) -> {
+			if (!node.isExpired(now)) {
+				builder.append(key);
+				builder.append("=");
+				builder.append(node.value);
+				builder.append(", ");
+			}
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+
+	private void _put(K key, V value, long now) {
+		Node<K, V> node = new Node<>(key, value, deadline(now));
+
+		Node<K, V> previousNode = entries.put(key, node);
+		if (previousNode != null) {
+			expiryTimeline.deschedule(previousNode);
+			if (previousNode.isExpired(now)) {
+				statsCounter.recordEviction(RemovalCause.EXPIRED);
+				removalNotifier.enqueue(key, previousNode.value, RemovalCause.EXPIRED);
+			} else {
+				removalNotifier.enqueue(key, previousNode.value, RemovalCause.REPLACED);
+			}
+		}
+
+		expiryTimeline.schedule(node);
+	}
+
+	private void afterRead(long now) {
+		if ((now != maintenanceTime) && expiryLock.tryLock()) {
+			try {
+				expireEntries(now);
+			} finally {
+				expiryLock.unlock();
+			}
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	private void afterWrite(Node<K, V> node, long now) {
+		try {
+			expiryLock.lock();
+
+			expireEntries(now);
+
+			// The node might have been replaced or evicted meanwhile
+			if (entries.get(node.getValue()) == node) {
+				expiryTimeline.schedule(node);
+			}
+		} finally {
+			expiryLock.unlock();
+		}
+
+		removalNotifier.dispatch();
+	}
+
+	private long deadline(long now) {
+		return (timeToLive > (Long.MAX_VALUE - now)) ? Long.MAX_VALUE : (now + timeToLive);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void expireEntries(long now) {
+		expiryTimeline.advance(now, timer -> {
+			if (entries.remove(timer.getValue(), timer)) {
+				statsCounter.recordEviction(RemovalCause.EXPIRED);
+				removalNotifier.enqueue(timer.getValue(), ((Node<K, V>) timer).value, RemovalCause.EXPIRED);
+			}
+		});
+
+		maintenanceTime = now;
+	}
+
+	private void onAccess(Node<K, V> node, long now) {
+		if (expiryPolicy == ExpiryPolicy.EXPIRE_AFTER_ACCESS) {
+			// Postponing the deadline does not require rescheduling
+			node.setDeadline(Math.max(node.getDeadline(), deadline(now)));
+		}
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Node<K, V> extends TimerWheel.Timer<K> {
+
+		private final V value;
+
+
+		private Node(K key, V value, long deadline) {
+			super(key, deadline);
+
+			this.value = value;
+		}
+
+
+		private boolean isExpired(long now) {
+			return now > getDeadline();
+		}
+
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+/**
+ * Policies determining how entries whose values have been reclaimed by the garbage collector are removed from a cache.
+ *
+ * @since 2.1
+ *
+ * @see SoftCache
+ * @see ConcurrentSoftCache
+ */
+public enum ExpungePolicy {
+
+	/**
+	 * Reclaimed entries are discovered and removed by a shared low-priority daemon thread,
+	 * each cache operation removing at most a small fixed number of them.
+	 * Cache operations do not slow down after a garbage collection has reclaimed many values,
+	 * but reclaimed entries may be counted by the size of the cache for a while.
+	 *
+	 * @since 2.1
+	 */
+	BACKGROUND,
+
+	/**
+	 * All reclaimed entries are removed by the next cache operation.
+	 *
+	 * @since 2.1
+	 */
+	INLINE
+
+}
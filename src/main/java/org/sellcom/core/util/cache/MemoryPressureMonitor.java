@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Monitor of heap usage that sheds the coldest entries of bounded caches when the heap is running full.
+ * <p>
+ * The monitor listens for garbage collection notifications, as well as for collection usage threshold notifications of the heap memory pools.
+ * Once the heap usage measured after a garbage collection reaches the high watermark,
+ * each registered cache evicts the given fraction of its entries least likely to be used again (see {@link BoundedCache#evictColdest(double)}).
+ * The caches keep being shed after every garbage collection until the heap usage drops below the low watermark.
+ * Watermarks are fractions of the maximum heap size.
+ * <p>
+ * Unlike relying on soft references, the behavior does not depend on the heuristics of the garbage collector in use,
+ * so a {@code BoundedCache} registered with a monitor is a predictable replacement for a {@link SoftCache}.
+ * Only bounded caches can be registered, as other caches do not track which of their entries are cold.
+ * <p>
+ * Caches are referenced weakly and do not need to be unregistered before being discarded.
+ * Close the monitor to stop listening for notifications.
+ * <p>
+ * Note that the collection usage thresholds of the heap memory pools are global to the JVM.
+ * While any monitor is open, they are set to the lowest high watermark of the open monitors, overriding any thresholds set by other code.
+ * The previous thresholds are restored once the last monitor is closed.
+ *
+ * @since 2.1
+ */
+public final class MemoryPressureMonitor implements AutoCloseable {
+
+	// Notification type of com.sun.management.GarbageCollectionNotificationInfo, referenced by name to avoid depending on JDK-specific classes
+	private static final String GARBAGE_COLLECTION_NOTIFICATION = "com.sun.management.gc.notification";
+
+	private static final List<MemoryPressureMonitor> openMonitors = new ArrayList<>(); // Guarded by the class
+
+	private static final Map<String, Long> previousThresholds = new HashMap<>(); // Guarded by the class, keyed by pool names
+
+	private final Set<BoundedCache<?, ?>> caches = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+	private final double highWatermark;
+
+	private long lastCollectionCount = -1L;
+
+	private final NotificationListener listener = this::handleNotification;
+
+	private final double lowWatermark;
+
+	private final double shedFraction;
+
+	private boolean shedding;
+
+
+	/**
+	 * Creates a monitor that starts shedding the given fraction of entries of the registered caches after each garbage collection
+	 * once the heap usage reaches the high watermark, and stops when it drops below the low watermark.
+	 *
+	 * @throws IllegalArgumentException if {@code lowWatermark} is not between 0 and {@code highWatermark}
+	 * @throws IllegalArgumentException if {@code highWatermark} is not between 0 and 1
+	 * @throws IllegalArgumentException if {@code shedFraction} is not between 0 and 1
+	 *
+	 * @since 2.1
+	 */
+	public MemoryPressureMonitor(double lowWatermark, double highWatermark, double shedFraction) {
+		Contract.checkArgument((highWatermark > 0.0) && (highWatermark <= 1.0), "High watermark must be between 0 and 1: {0}", highWatermark);
+		Contract.checkArgument((lowWatermark > 0.0) && (lowWatermark <= highWatermark), "Low watermark must be between 0 and high watermark: {0}", lowWatermark);
+		Contract.checkArgument((shedFraction > 0.0) && (shedFraction <= 1.0), "Shed fraction must be between 0 and 1: {0}", shedFraction);
+
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+		this.shedFraction = shedFraction;
+
+		open(this);
+
+		addListener(ManagementFactory.getMemoryMXBean());
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			addListener(collector);
+		}
+	}
+
+
+	/**
+	 * Stops listening for notifications.
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void close() {
+		close(this);
+
+		synchronized (emitters) {
+			for (NotificationEmitter emitter : emitters) {
+				try {
+					emitter.removeNotificationListener(listener);
+				} catch (ListenerNotFoundException e) {
+					// Already removed
+				}
+			}
+
+			emitters.clear();
+		}
+	}
+
+	/**
+	 * Registers the given cache to be shed when the heap is running full.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void register(BoundedCache<?, ?> cache) {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+
+		caches.add(cache);
+	}
+
+	/**
+	 * Unregisters the given cache.
+	 *
+	 * @throws IllegalArgumentException if {@code cache} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public void unregister(BoundedCache<?, ?> cache) {
+		Contract.checkArgument(cache != null, "Cache must not be null");
+
+		caches.remove(cache);
+	}
+
+
+	private void addListener(Object bean) {
+		if (bean instanceof NotificationEmitter) {
+			NotificationEmitter emitter = (NotificationEmitter) bean;
+			emitter.addNotificationListener(listener, null, null);
+
+			synchronized (emitters) {
+				emitters.add(emitter);
+			}
+		}
+	}
+
+	private static synchronized void applyThresholds() {
+		double lowestHighWatermark = openMonitors.stream().mapToDouble(monitor -> monitor.highWatermark).min().orElse(1.0);
+
+		for (MemoryPoolMXBean pool : heapPools()) {
+			long maximum = pool.getUsage().getMax();
+			if (maximum > 0L) {
+				pool.setCollectionUsageThreshold((long) (lowestHighWatermark * maximum));
+			}
+		}
+	}
+
+	private static synchronized void close(MemoryPressureMonitor monitor) {
+		if (!openMonitors.remove(monitor)) { // Already closed
+			return;
+		}
+
+		if (openMonitors.isEmpty()) {
+			for (MemoryPoolMXBean pool : heapPools()) {
+				Long previousThreshold = previousThresholds.remove(pool.getName());
+				if (previousThreshold != null) {
+					pool.setCollectionUsageThreshold(previousThreshold);
+				}
+			}
+		} else {
+			applyThresholds();
+		}
+	}
+
+	private static long collectionCount() {
+		long collectionCount = 0L;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collectionCount += Math.max(0L, collector.getCollectionCount());
+		}
+
+		return collectionCount;
+	}
+
+	private void handleNotification(Notification notification, Object handback) {
+		String type = notification.getType();
+		if (!type.equals(GARBAGE_COLLECTION_NOTIFICATION) && !type.equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+			return;
+		}
+
+		// Both notifications may be emitted for the same collection, which must only be handled once
+		synchronized (this) {
+			long collectionCount = collectionCount();
+			if (collectionCount == lastCollectionCount) {
+				return;
+			}
+
+			lastCollectionCount = collectionCount;
+		}
+
+		onHeapUsage(heapUsage());
+	}
+
+	private static List<MemoryPoolMXBean> heapPools() {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ((pool.getType() == MemoryType.HEAP) && pool.isCollectionUsageThresholdSupported()) {
+				heapPools.add(pool);
+			}
+		}
+
+		return heapPools;
+	}
+
+	private static double heapUsage() {
+		MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		long maximum = (heapUsage.getMax() > 0L) ? heapUsage.getMax() : heapUsage.getCommitted();
+
+		// The usage measured right after the latest collection of each pool, which excludes garbage not collected yet
+		long used = 0L;
+		boolean measured = false;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage collectionUsage = (pool.getType() == MemoryType.HEAP) ? pool.getCollectionUsage() : null;
+			if (collectionUsage != null) {
+				used += collectionUsage.getUsed();
+				measured = true;
+			}
+		}
+
+		return (double) (measured ? used : heapUsage.getUsed()) / maximum;
+	}
+
+	private static synchronized void open(MemoryPressureMonitor monitor) {
+		if (openMonitors.isEmpty()) {
+			for (MemoryPoolMXBean pool : heapPools()) {
+				previousThresholds.put(pool.getName(), pool.getCollectionUsageThreshold());
+			}
+		}
+
+		openMonitors.add(monitor);
+		applyThresholds();
+	}
+
+	// Intended for testing only
+	void onHeapUsage(double heapUsage) {
+		List<BoundedCache<?, ?>> shedCaches;
+		synchronized (this) {
+			if (heapUsage >= highWatermark) {
+				shedding = true;
+			} else if (heapUsage < lowWatermark) {
+				shedding = false;
+			}
+
+			if (!shedding) {
+				return;
+			}
+
+			synchronized (caches) {
+				shedCaches = new ArrayList<>(caches);
+			}
+		}
+
+		for (BoundedCache<?, ?> cache : shedCaches) {
+			cache.evictColdest(shedFraction);
+		}
+	}
+
+}
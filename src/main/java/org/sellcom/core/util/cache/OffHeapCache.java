@@ -0,0 +1,537 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sellcom.core.Contract;
+import org.sellcom.core.internal.util.cache.SlabAllocator;
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Thread-safe cache storing values outside the Java heap, bounded by the total capacity of its memory.
+ * <p>
+ * Values are copied into direct memory slabs managed by the cache itself; only a compact index of the entries remains on the heap.
+ * Each value occupies a chunk whose size is the smallest power of two (at least 64 bytes) that fits it,
+ * so that up to half of the memory may be left unused in the worst case.
+ * Values must not be larger than the slab size.
+ * <p>
+ * When there is no free chunk of the required size, the least recently used entry of the same chunk size is evicted.
+ * Slabs are moved between chunk sizes only when a chunk size runs out of entries to evict.
+ * <p>
+ * Values are returned as read-only views of the direct memory, without copying.
+ * A view remains valid only until its entry is evicted or replaced; after that, it may expose the contents of another entry.
+ * Copy the value if it has to outlive the entry.
+ * <p>
+ * All operations are serialized using a single lock.
+ *
+ * @since 2.1
+ */
+public final class OffHeapCache<K> implements Cache<K, ByteBuffer> {
+
+	private static final int DEFAULT_SLAB_SIZE = 1 << 20; // 1 MiB
+
+	private final SlabAllocator allocator;
+
+	private final Map<K, Node<K>> entries = new HashMap<>();
+
+	private final AccessOrderList<K>[] evictionLists;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Function<K, ByteBuffer> mappingFunction;
+
+	private int reclaimedSlab;
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+
+	/**
+	 * Creates a cache storing values in direct memory of the given capacity in bytes, divided into slabs of 1 MiB.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is less than the slab size
+	 *
+	 * @since 2.1
+	 */
+	public OffHeapCache(long capacity) {
+		this(capacity, DEFAULT_SLAB_SIZE, null, false);
+	}
+
+	/**
+	 * Creates a cache storing values in direct memory of the given capacity in bytes, divided into slabs of 1 MiB,
+	 * that uses the given mapping function to create values from keys.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is less than the slab size
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public OffHeapCache(long capacity, Function<K, ByteBuffer> mappingFunction) {
+		this(capacity, DEFAULT_SLAB_SIZE, mappingFunction, true);
+	}
+
+	/**
+	 * Creates a cache storing values in direct memory of the given capacity in bytes, divided into slabs of the given size in bytes.
+	 *
+	 * @throws IllegalArgumentException if {@code capacity} is less than {@code slabSize}
+	 * @throws IllegalArgumentException if {@code slabSize} is not a power of two
+	 * @throws IllegalArgumentException if {@code slabSize} is less than 64
+	 *
+	 * @since 2.1
+	 */
+	public OffHeapCache(long capacity, int slabSize) {
+		this(capacity, slabSize, null, false);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private OffHeapCache(long capacity, int slabSize, Function<K, ByteBuffer> mappingFunction, boolean loading) {
+		Contract.checkArgument(!loading || (mappingFunction != null), "Mapping function must not be null");
+
+		this.mappingFunction = mappingFunction;
+
+		allocator = new SlabAllocator(capacity, slabSize);
+
+		evictionLists = new AccessOrderList[allocator.sizeClass(slabSize) + 1];
+		for (int sizeClass = 0; sizeClass < evictionLists.length; sizeClass++) {
+			evictionLists[sizeClass] = new AccessOrderList<>();
+		}
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		try {
+			lock.lock();
+
+			Node<K> node = entries.remove(key);
+			if (node != null) {
+				release(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void evict(K key, ByteBuffer value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			lock.lock();
+
+			Node<K> node = entries.get(key);
+			if ((node != null) && read(node).equals(value)) {
+				entries.remove(key);
+				release(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		try {
+			lock.lock();
+
+			entries.values().forEach(node -> {
+				release(node);
+				statsCounter.recordEviction(RemovalCause.EXPLICIT);
+			});
+			entries.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Performs the given action for each entry in this cache until all entries have been processed or the action throws an exception.
+	 * The action must not modify this cache.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super ByteBuffer> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		try {
+			lock.lock();
+
+			entries.forEach((currentKey, currentNode) -> action.accept(currentKey, read(currentNode)));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a read-only view of the value associated with the given key in this cache.
+	 * The view remains valid only until the entry is evicted or replaced.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws IllegalArgumentException if the value created by the mapping function is larger than the slab size
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public Optional<ByteBuffer> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		try {
+			lock.lock();
+
+			Node<K> node = entries.get(key);
+			if (node != null) {
+				statsCounter.recordHits(1);
+				evictionLists[node.sizeClass].moveToLast(node);
+
+				return Optional.of(read(node));
+			}
+
+			statsCounter.recordMisses(1);
+
+			if (mappingFunction != null) {
+				ByteBuffer value = CacheSupport.loadValue(key, mappingFunction, statsCounter);
+				if (value != null) {
+					return Optional.of(read(_put(key, value)));
+				}
+			}
+
+			return Optional.empty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a read-only view of the value associated with the given key in this cache.
+	 * Returns the given default value if this cache contains no entry with the key.
+	 * The view remains valid only until the entry is evicted or replaced.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public ByteBuffer getOrDefault(K key, ByteBuffer defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		try {
+			lock.lock();
+
+			Node<K> node = entries.get(key);
+			if (node == null) {
+				statsCounter.recordMisses(1);
+
+				return defaultValue;
+			}
+
+			statsCounter.recordHits(1);
+			evictionLists[node.sizeClass].moveToLast(node);
+
+			return read(node);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (size() == 0);
+	}
+
+	/**
+	 * Creates an entry with the given key and a copy of the remaining bytes of the given value in this cache.
+	 * Overwrites the existing entry with the same key, if any.
+	 * Does not change the position of the value.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws IllegalArgumentException if {@code value} is {@code null}
+	 * @throws IllegalArgumentException if {@code value} is larger than the slab size
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void put(K key, ByteBuffer value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			lock.lock();
+
+			_put(key, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Creates entries with the given keys and copies of the remaining bytes of the given values in this cache.
+	 * Overwrites the existing entries with the same keys, if any.
+	 * Does not change the positions of the values.
+	 *
+	 * @throws IllegalArgumentException if {@code entries} is {@code null}
+	 * @throws IllegalArgumentException if any key or value is {@code null}
+	 * @throws IllegalArgumentException if any value is larger than the slab size
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void putAll(Map<? extends K, ? extends ByteBuffer> entries) {
+		Contract.checkArgument(entries != null, "Entries must not be null");
+
+		// Validated up front, so that an invalid value rejects the whole batch before anything is written
+		entries.forEach((key, value) -> {
+			Contract.checkArgument(key != null, "Key must not be null");
+			Contract.checkArgument(value != null, "Value must not be null");
+			Contract.checkArgument(value.remaining() <= allocator.getSlabSize(), "Value must not be larger than slab size: {0}", value.remaining());
+		});
+
+		try {
+			lock.lock();
+
+			entries.forEach(this::_put);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Creates an entry with the given key and a copy of the remaining bytes of the given value in this cache
+	 * only if no entry with the same key already exists.
+	 * Does not change the position of the value.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 * @throws IllegalArgumentException if {@code value} is {@code null}
+	 * @throws IllegalArgumentException if {@code value} is larger than the slab size
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void putIfAbsent(K key, ByteBuffer value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		try {
+			lock.lock();
+
+			if (!entries.containsKey(key)) {
+				_put(key, value);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
+	@Override
+	public int size() {
+		try {
+			lock.lock();
+
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		try {
+			lock.lock();
+
+			return entries.toString();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	private Node<K> _put(K key, ByteBuffer value) {
+		Contract.checkArgument(value.remaining() <= allocator.getSlabSize(), "Value must not be larger than slab size: {0}", value.remaining());
+
+		// The value is copied before the previous entry is released, since the value may be a view of it
+		int sizeClass = allocator.sizeClass(value.remaining());
+		long chunk = allocate(sizeClass);
+		allocator.write(chunk, value);
+
+		Node<K> node = new Node<>(key, chunk, value.remaining(), sizeClass);
+		Node<K> previousNode = entries.put(key, node);
+		if (previousNode != null) {
+			release(previousNode);
+		}
+		evictionLists[sizeClass].addLast(node);
+
+		return node;
+	}
+
+	private long allocate(int sizeClass) {
+		while (true) {
+			long chunk = allocator.allocate(sizeClass);
+			if (chunk >= 0L) {
+				return chunk;
+			}
+
+			Node<K> victim = evictionLists[sizeClass].peekFirst();
+			if (victim != null) {
+				entries.remove(victim.key);
+				release(victim);
+				statsCounter.recordEviction(RemovalCause.SIZE);
+			} else {
+				reclaimSlab(sizeClass);
+			}
+		}
+	}
+
+	private ByteBuffer read(Node<K> node) {
+		return allocator.read(node.chunk, node.length);
+	}
+
+	private void reclaimSlab(int sizeClass) {
+		// Slabs are reclaimed in turn, so that no chunk size is drained repeatedly
+		int slab;
+		do {
+			slab = reclaimedSlab;
+			reclaimedSlab = (reclaimedSlab + 1) % allocator.getSlabCount();
+		} while (allocator.getSlabClass(slab) == sizeClass);
+
+		int victimSlab = slab;
+		entries.values().removeIf(node -> {
+			if (SlabAllocator.slab(node.chunk) == victimSlab) {
+				release(node);
+				statsCounter.recordEviction(RemovalCause.SIZE);
+
+				return true;
+			}
+
+			return false;
+		});
+
+		allocator.reassign(slab, sizeClass);
+	}
+
+	private void release(Node<K> node) {
+		evictionLists[node.sizeClass].remove(node);
+		allocator.free(node.chunk, node.sizeClass);
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class AccessOrderList<K> {
+
+		private Node<K> first;
+
+		private Node<K> last;
+
+
+		private void addLast(Node<K> node) {
+			node.previous = last;
+			node.next = null;
+
+			if (last == null) {
+				first = node;
+			} else {
+				last.next = node;
+			}
+			last = node;
+		}
+
+		private void moveToLast(Node<K> node) {
+			if (node != last) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		private Node<K> peekFirst() {
+			return first;
+		}
+
+		private void remove(Node<K> node) {
+			if (node.previous == null) {
+				first = node.next;
+			} else {
+				node.previous.next = node.next;
+			}
+
+			if (node.next == null) {
+				last = node.previous;
+			} else {
+				node.next.previous = node.previous;
+			}
+
+			node.previous = null;
+			node.next = null;
+		}
+
+	}
+
+	private static class Node<K> {
+
+		private final long chunk;
+
+		private final K key;
+
+		private final int length;
+
+		private Node<K> next;
+
+		private Node<K> previous;
+
+		private final int sizeClass;
+
+
+		private Node(K key, long chunk, int length, int sizeClass) {
+			this.key = key;
+			this.chunk = chunk;
+			this.length = length;
+			this.sizeClass = sizeClass;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + length + " bytes]";
+		}
+
+	}
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Thread-safe cache divided into independently locked segments.
+ * <p>
+ * Keys are distributed among a power-of-two number of segments by their hash codes.
+ * Each segment is a separate cache guarded by its own lock, so that operations on keys in different segments do not contend.
+ * Operations spanning all segments, such as {@link #forEach(BiConsumer)} and {@link #size()}, lock one segment at a time
+ * and therefore do not reflect a consistent state of the whole cache while it is being modified.
+ *
+ * @since 2.1
+ */
+public final class SegmentedCache<K, V> implements Cache<K, V> {
+
+	private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+	private final Segment<K, V>[] segments;
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+
+	/**
+	 * Creates a cache divided into segments with soft-referenced values.
+	 * The number of segments is the given concurrency level rounded up to the nearest power of two.
+	 *
+	 * @throws IllegalArgumentException if {@code concurrencyLevel} is not positive or greater than 65536
+	 *
+	 * @since 2.1
+	 */
+	public SegmentedCache(int concurrencyLevel) {
+		this(concurrencyLevel, SoftCache::new);
+	}
+
+	/**
+	 * Creates a cache divided into segments created by the given factory.
+	 * The number of segments is the given concurrency level rounded up to the nearest power of two.
+	 * The segments need not be thread-safe.
+	 *
+	 * @throws IllegalArgumentException if {@code concurrencyLevel} is not positive or greater than 65536
+	 * @throws IllegalArgumentException if {@code segmentFactory} is {@code null}
+	 * @throws IllegalArgumentException if {@code segmentFactory} returns {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public SegmentedCache(int concurrencyLevel, Supplier<? extends Cache<K, V>> segmentFactory) {
+		Contract.checkArgument((concurrencyLevel > 0) && (concurrencyLevel <= MAXIMUM_CONCURRENCY_LEVEL), "Concurrency level must be between 1 and 65536: {0}", concurrencyLevel);
+		Contract.checkArgument(segmentFactory != null, "Segment factory must not be null");
+
+		int segmentCount = Integer.highestOneBit((concurrencyLevel << 1) - 1);
+
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			Cache<K, V> cache = segmentFactory.get();
+			Contract.checkArgument(cache != null, "Segment factory must not return null");
+
+			segments[i] = new Segment<>(cache);
+		}
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			segment.cache.evict(key);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			segment.cache.evict(key, value);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		for (Segment<K, V> segment : segments) {
+			try {
+				segment.lock.lock();
+
+				segment.cache.evictAll();
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Performs the given action for each entry in this cache until all entries have been processed or the action throws an exception.
+	 * Visits the segments one at a time, holding the lock of the visited segment only.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		for (Segment<K, V> segment : segments) {
+			try {
+				segment.lock.lock();
+
+				segment.cache.forEach(action);
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public Optional<V> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			return segment.cache.get(key);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			return segment.cache.getOrDefault(key, defaultValue);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Segment<K, V> segment : segments) {
+			try {
+				segment.lock.lock();
+
+				if (!segment.cache.isEmpty()) {
+					return false;
+				}
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			segment.cache.put(key, value);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Copies all entries from the given map to this cache.
+	 * Groups the entries by segment first, so that the lock of each segment is acquired once per batch.
+	 *
+	 * @throws IllegalArgumentException if {@code entries} is {@code null}
+	 * @throws IllegalArgumentException if any key or value is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		Contract.checkArgument(entries != null, "Entries must not be null");
+
+		Map<Segment<K, V>, Map<K, V>> segmentEntries = new HashMap<>();
+		entries.forEach((key, value) -> {
+			Contract.checkArgument(key != null, "Key must not be null");
+			Contract.checkArgument(value != null, "Value must not be null");
+
+			segmentEntries.computeIfAbsent(segmentFor(key), segment -> new LinkedHashMap<>()).put(key, value);
+		});
+
+		segmentEntries.forEach((segment, batch) -> {
+			try {
+				segment.lock.lock();
+
+				segment.cache.putAll(batch);
+			} finally {
+				segment.lock.unlock();
+			}
+		});
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Segment<K, V> segment = segmentFor(key);
+		try {
+			segment.lock.lock();
+
+			segment.cache.putIfAbsent(key, value);
+		} finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts recording the statistics of this cache using the given counter, shared by all segments.
+	 *
+	 * @throws IllegalArgumentException if {@code statsCounter} is {@code null}
+	 * @throws UnsupportedOperationException if the segments do not support recording statistics
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		for (Segment<K, V> segment : segments) {
+			try {
+				segment.lock.lock();
+
+				segment.cache.setStatsCounter(statsCounter);
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+
+		this.statsCounter = statsCounter;
+	}
+
+	/**
+	 * Returns the number of entries in this cache.
+	 * Counts the entries of the segments one at a time, holding the lock of the counted segment only.
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public int size() {
+		long size = 0L;
+		for (Segment<K, V> segment : segments) {
+			try {
+				segment.lock.lock();
+
+				size += segment.cache.size();
+			} finally {
+				segment.lock.unlock();
+			}
+		}
+
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		forEach((key, value) -> {
+			builder.append(key);
+			builder.append("=");
+			builder.append(value);
+			builder.append(", ");
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key.hashCode();
+
+		// Spreads the higher bits downwards, since only the lowest bits select the segment
+		hash ^= (hash >>> 16);
+		hash ^= (hash >>> 8);
+
+		return segments[hash & (segments.length - 1)];
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Segment<K, V> {
+
+		private final Cache<K, V> cache;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+
+		private Segment(Cache<K, V> cache) {
+			this.cache = cache;
+		}
+
+	}
+
+}
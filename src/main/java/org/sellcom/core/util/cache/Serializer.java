@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Conversion of cache keys or values to and from bytes.
+ * Implementations must be thread-safe.
+ *
+ * @since 2.1
+ *
+ * @see CacheSnapshots
+ */
+public interface Serializer<T> {
+
+	/**
+	 * Creates an object from the remaining bytes of the given buffer.
+	 * The buffer is only valid during the call and must not be retained.
+	 *
+	 * @since 2.1
+	 */
+	T deserialize(ByteBuffer bytes);
+
+	/**
+	 * Converts the given object to bytes.
+	 *
+	 * @since 2.1
+	 */
+	byte[] serialize(T object);
+
+}
@@ -21,23 +21,37 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import org.sellcom.core.Contract;
+import org.sellcom.core.internal.util.cache.ReferenceReaper;
+import org.sellcom.core.util.RemovalCause;
 
 /**
  * Unbounded cache with soft-referenced values.
+ * <p>
+ * Entries whose values have been reclaimed by the garbage collector are removed according to the given {@link ExpungePolicy}, inline by default.
  *
  * @since 1.3
  */
 public final class SoftCache<K, V> implements Cache<K, V> {
 
+	private static final int MAXIMUM_EXPUNGED_REFERENCES = 16;
+
 	private final Map<K, SoftReference<V>> entries = new HashMap<>();
 
+	private final ExpungePolicy expungePolicy;
+
 	private final Function<K, V> mappingFunction;
 
-	private final ReferenceQueue<V> staleReferences = new ReferenceQueue<>();
+	private final Queue<KeyedSoftReference<K, V>> reapedReferences = new ConcurrentLinkedQueue<>();
+
+	private final ReferenceQueue<Object> staleReferences;
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
 
 
 
@@ -47,7 +61,18 @@
 	 * @since 1.3
 	 */
 	public SoftCache() {
-		this.mappingFunction = null;
+		this(null, ExpungePolicy.INLINE, false);
+	}
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values, removing reclaimed entries according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code expungePolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public SoftCache(ExpungePolicy expungePolicy) {
+		this(null, expungePolicy, false);
 	}
 
 	/**
@@ -58,9 +83,30 @@ public SoftCache() {
 	 * @since 1.3
 	 */
 	public SoftCache(Function<K, V> mappingFunction) {
-		Contract.checkArgument(mappingFunction != null, "Mapping function must not be null");
+		this(mappingFunction, ExpungePolicy.INLINE, true);
+	}
+
+	/**
+	 * Creates an unbounded cache with soft-referenced values that uses the given mapping function to create values from keys,
+	 * removing reclaimed entries according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code mappingFunction} is {@code null}
+	 * @throws IllegalArgumentException if {@code expungePolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public SoftCache(Function<K, V> mappingFunction, ExpungePolicy expungePolicy) {
+		this(mappingFunction, expungePolicy, true);
+	}
+
+	private SoftCache(Function<K, V> mappingFunction, ExpungePolicy expungePolicy, boolean loading) {
+		Contract.checkArgument(!loading || (mappingFunction != null), "Mapping function must not be null");
+		Contract.checkArgument(expungePolicy != null, "Expunge policy must not be null");
 
 		this.mappingFunction = mappingFunction;
+		this.expungePolicy = expungePolicy;
+
+		staleReferences = (expungePolicy == ExpungePolicy.BACKGROUND) ? ReferenceReaper.getQueue() : new ReferenceQueue<>();
 	}
 
 
@@ -70,7 +116,9 @@ public void evict(K key) {
 
 		expungeStaleReferences();
 
-		entries.remove(key);
+		if (entries.remove(key) != null) {
+			statsCounter.recordEviction(RemovalCause.EXPLICIT);
+		}
 	}
 
 	@Override
@@ -81,8 +129,7 @@ public void evict(K key, V value) {
 		// NOTE: Do not delegate to entries.remove(K, SoftReference<V>)
 		// to avoid comparing references using identity.
 
-		Optional<V> currentValue = get(key);
-		if (currentValue.isPresent() && Objects.equals(currentValue.get(), value)) {
+		if (Objects.equals(getIfPresent(key), value)) {
 			evict(key);
 		}
 	}
@@ -91,7 +138,9 @@ public void evict(K key, V value) {
 	public void evictAll() {
 		expungeStaleReferences();
 
+		int evictedCount = entries.size();
 		entries.clear();
+		statsCounter.recordEvictions(RemovalCause.EXPLICIT, evictedCount);
 	}
 
 	@Override
@@ -119,10 +168,12 @@ public Optional<V> get(K key) {
 
 		SoftReference<V> softReference = entries.get(key);
 		if (softReference == null) { // Mapping not present
+			statsCounter.recordMisses(1);
+
 			if (mappingFunction != null) {
-				value = mappingFunction.apply(key);
+				value = CacheSupport.loadValue(key, mappingFunction, statsCounter);
 				if (value != null) {
-					entries.put(key, new KeyedSoftReference<>(staleReferences, key, value));
+					entries.put(key, newReference(key, value));
 				}
 			}
 
@@ -130,11 +181,15 @@ public Optional<V> get(K key) {
 		}
 
 		value = softReference.get();
-		if (value == null) { // Mapping expired
+		if (value != null) {
+			statsCounter.recordHits(1);
+		} else { // Mapping expired
+			statsCounter.recordMisses(1);
+
 			if (mappingFunction != null) {
-				value = mappingFunction.apply(key);
+				value = CacheSupport.loadValue(key, mappingFunction, statsCounter);
 				if (value != null) {
-					entries.put(key, new KeyedSoftReference<>(staleReferences, key, value));
+					entries.put(key, newReference(key, value));
 
 					return Optional.ofNullable(value);
 				}
@@ -154,17 +209,28 @@ public V getOrDefault(K key, V defaultValue) {
 
 		SoftReference<V> softReference = entries.get(key);
 		if (softReference == null) { // Mapping not present
+			statsCounter.recordMisses(1);
+
 			return defaultValue;
 		}
 
 		value = softReference.get();
 		if (value == null) { // Mapping expired
+			statsCounter.recordMisses(1);
+
 			return defaultValue;
 		}
 
+		statsCounter.recordHits(1);
+
 		return value;
 	}
 
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
 	@Override
 	public boolean isEmpty() {
 		expungeStaleReferences();
@@ -177,7 +243,7 @@ public void put(K key, V value) {
 		Contract.checkArgument(key != null, "Key must not be null");
 		Contract.checkArgument(value != null, "Value must not be null");
 
-		entries.put(key, new KeyedSoftReference<>(staleReferences, key, value));
+		entries.put(key, newReference(key, value));
 	}
 
 	@Override
@@ -188,12 +254,20 @@ public void putIfAbsent(K key, V value) {
 		// NOTE: Do not delegate to entries.putIfAbsent(K, SoftReference<V>)
 		// to avoid creating an unnecessary KeyHoldingSoftReference.
 
-		Optional<V> currentValue = get(key);
-		if (!currentValue.isPresent()) {
+		expungeStaleReferences();
+
+		if (getIfPresent(key) == null) {
 			put(key, value);
 		}
 	}
 
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		this.statsCounter = statsCounter;
+	}
+
 	@Override
 	public int size() {
 		expungeStaleReferences();
@@ -202,12 +276,41 @@ public int size() {
 	}
 
 
+	private void expunge(KeyedSoftReference<K, V> reference) {
+		// Only remove the mapping if it has not been replaced meanwhile
+		if (entries.remove(reference.getKey(), reference)) {
+			statsCounter.recordEviction(RemovalCause.COLLECTED);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void expungeStaleReferences() {
-		KeyedSoftReference<K, V> reference;
-		while ((reference = (KeyedSoftReference<K, V>) staleReferences.poll()) != null) {
-			entries.remove(reference.getKey());
+		if (expungePolicy == ExpungePolicy.BACKGROUND) {
+			// The references are discovered by the reaper thread, only a bounded number of them is removed per call
+			KeyedSoftReference<K, V> reference;
+			for (int i = 0; (i < MAXIMUM_EXPUNGED_REFERENCES) && ((reference = reapedReferences.poll()) != null); i++) {
+				expunge(reference);
+			}
+		} else {
+			KeyedSoftReference<K, V> reference;
+			while ((reference = (KeyedSoftReference<K, V>) staleReferences.poll()) != null) {
+				expunge(reference);
+			}
+		}
+	}
+
+	private V getIfPresent(K key) {
+		SoftReference<V> softReference = entries.get(key);
+
+		return (softReference != null) ? softReference.get() : null;
+	}
+
+	private KeyedSoftReference<K, V> newReference(K key, V value) {
+		if (expungePolicy == ExpungePolicy.BACKGROUND) {
+			return new ReapableSoftReference<>(staleReferences, key, value, reapedReferences);
 		}
+
+		return new KeyedSoftReference<>(staleReferences, key, value);
 	}
 
 	@Override
@@ -254,4 +357,23 @@ private K getKey() {
 
 	}
 
+	private static class ReapableSoftReference<K, V> extends KeyedSoftReference<K, V> implements ReferenceReaper.Reapable {
+
+		private final Queue<KeyedSoftReference<K, V>> reapedReferences;
+
+
+		private ReapableSoftReference(ReferenceQueue<? super V> staleReferences, K key, V value, Queue<KeyedSoftReference<K, V>> reapedReferences) {
+			super(staleReferences, key, value);
+
+			this.reapedReferences = reapedReferences;
+		}
+
+
+		@Override
+		public void reap() {
+			reapedReferences.add(this);
+		}
+
+	}
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import org.sellcom.core.util.RemovalCause;
+
+/**
+ * Recorder of cache statistics.
+ * Implementations must be thread-safe and should not block.
+ *
+ * @since 2.1
+ *
+ * @see ConcurrentStatsCounter
+ */
+public interface StatsCounter {
+
+	/**
+	 * Returns a counter that records nothing.
+	 *
+	 * @since 2.1
+	 */
+	static StatsCounter disabled() {
+		return DisabledStatsCounter.INSTANCE;
+	}
+
+
+	/**
+	 * Records the eviction of an entry for the given cause.
+	 * Replaced entries are not evictions and are never recorded.
+	 *
+	 * @since 2.1
+	 */
+	void recordEviction(RemovalCause cause);
+
+	/**
+	 * Records the eviction of the given number of entries for the given cause.
+	 *
+	 * @since 2.1
+	 */
+	void recordEvictions(RemovalCause cause, int count);
+
+	/**
+	 * Records the given number of cache hits.
+	 *
+	 * @since 2.1
+	 */
+	void recordHits(int count);
+
+	/**
+	 * Records a failed load that took the given time in nanoseconds.
+	 * Loads producing no value are considered failed.
+	 *
+	 * @since 2.1
+	 */
+	void recordLoadFailure(long loadTime);
+
+	/**
+	 * Records a successful load that took the given time in nanoseconds.
+	 *
+	 * @since 2.1
+	 */
+	void recordLoadSuccess(long loadTime);
+
+	/**
+	 * Records the given number of cache misses.
+	 *
+	 * @since 2.1
+	 */
+	void recordMisses(int count);
+
+	/**
+	 * Returns a snapshot of the statistics recorded so far.
+	 *
+	 * @since 2.1
+	 */
+	CacheStats snapshot();
+
+}
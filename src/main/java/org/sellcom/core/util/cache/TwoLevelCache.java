@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.sellcom.core.Contract;
+
+/**
+ * Cache composed of a small bounded first level in front of a larger second level.
+ * <p>
+ * Values are looked up in the first level, which is a {@link BoundedCache}, and then in the given second level.
+ * Values found in the second level are promoted to the first level, and values evicted from the first level to keep it within its maximum size
+ * are demoted to the second level. Evicting an entry explicitly removes it from both levels.
+ * When a value is written, it reaches the second level according to the given {@link WritePolicy}.
+ * <p>
+ * Values are loaded by the second level, if it uses a mapping function.
+ * Writes and explicit evictions of the same key are serialized by striped locks, and promotions and demotions of a key
+ * are discarded if the key has been written or evicted meanwhile, so that neither level is left with an outdated value.
+ * Demotions are performed after the first level has released its own lock, so that the second level never runs under it.
+ * The cache is thread-safe if the second level is thread-safe.
+ * <p>
+ * When statistics are recorded, the hits and misses of each level are also available separately.
+ *
+ * @since 2.1
+ */
+public final class TwoLevelCache<K, V> implements Cache<K, V> {
+
+	private static final int STRIPE_COUNT = 64;
+
+	private final BoundedCache<K, V> firstLevel;
+
+	private volatile StatsCounter firstLevelStatsCounter = StatsCounter.disabled();
+
+	private final ConcurrentMap<K, V> pendingDemotions = new ConcurrentHashMap<>();
+
+	private final Cache<K, V> secondLevel;
+
+	private volatile StatsCounter secondLevelStatsCounter = StatsCounter.disabled();
+
+	private volatile StatsCounter statsCounter = StatsCounter.disabled();
+
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	private final WritePolicy writePolicy;
+
+
+	/**
+	 * Creates a cache with a first level bounded by the given number of entries in front of the given second level,
+	 * writing values through to the second level.
+	 *
+	 * @throws IllegalArgumentException if {@code firstLevelMaximumSize} is not positive
+	 * @throws IllegalArgumentException if {@code secondLevel} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public TwoLevelCache(long firstLevelMaximumSize, Cache<K, V> secondLevel) {
+		this(firstLevelMaximumSize, secondLevel, WritePolicy.WRITE_THROUGH);
+	}
+
+	/**
+	 * Creates a cache with a first level bounded by the given number of entries in front of the given second level,
+	 * writing values to the second level according to the given policy.
+	 *
+	 * @throws IllegalArgumentException if {@code firstLevelMaximumSize} is not positive
+	 * @throws IllegalArgumentException if {@code secondLevel} is {@code null}
+	 * @throws IllegalArgumentException if {@code writePolicy} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	public TwoLevelCache(long firstLevelMaximumSize, Cache<K, V> secondLevel, WritePolicy writePolicy) {
+		Contract.checkArgument(secondLevel != null, "Second level must not be null");
+		Contract.checkArgument(writePolicy != null, "Write policy must not be null");
+
+		this.firstLevel = new BoundedCache<>(firstLevelMaximumSize);
+		this.secondLevel = secondLevel;
+		this.writePolicy = writePolicy;
+
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new Stripe();
+		}
+
+		// Only queues the demotions, since the listener runs under the lock of the first level
+		firstLevel.setEvictionListener(pendingDemotions::put);
+	}
+
+
+	@Override
+	public void evict(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		Stripe stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+			stripe.version += 1;
+
+			pendingDemotions.remove(key);
+			firstLevel.evict(key);
+			secondLevel.evict(key);
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	@Override
+	public void evict(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+			stripe.version += 1;
+
+			pendingDemotions.remove(key, value);
+			firstLevel.evict(key, value);
+			secondLevel.evict(key, value);
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	@Override
+	public void evictAll() {
+		try {
+			for (Stripe stripe : stripes) {
+				stripe.lock.lock();
+				stripe.version += 1;
+			}
+
+			pendingDemotions.clear();
+			firstLevel.evictAll();
+			secondLevel.evictAll();
+		} finally {
+			for (Stripe stripe : stripes) {
+				stripe.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Performs the given action for each entry in this cache until all entries have been processed or the action throws an exception.
+	 * Visits the entries of the first level, followed by the entries of the second level not present in the first level.
+	 * Exceptions thrown by the action are relayed to the caller.
+	 *
+	 * @throws IllegalArgumentException if {@code action} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Contract.checkArgument(action != null, "Action must not be null");
+
+		Set<K> visitedKeys = new HashSet<>();
+		firstLevel.forEach((currentKey, currentValue) -> {
+			visitedKeys.add(currentKey);
+			action.accept(currentKey, currentValue);
+		});
+
+		pendingDemotions.forEach((currentKey, currentValue) -> {
+			if (visitedKeys.add(currentKey)) {
+				action.accept(currentKey, currentValue);
+			}
+		});
+
+		secondLevel.forEach((currentKey, currentValue) -> {
+			if (!visitedKeys.contains(currentKey)) {
+				action.accept(currentKey, currentValue);
+			}
+		});
+	}
+
+	/**
+	 * Returns the value associated with the given key in this cache, loading it by the second level if necessary.
+	 * Values loaded by the second level count as hits in the statistics of the second level.
+	 *
+	 * @throws IllegalArgumentException if {@code key} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public Optional<V> get(K key) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		V value = getFromFirstLevel(key);
+		if (value != null) {
+			statsCounter.recordHits(1);
+
+			return Optional.of(value);
+		}
+
+		Stripe stripe = stripeFor(key);
+		long version = stripe.version;
+
+		// Gives the second level a chance to load the value
+		value = secondLevel.get(key).orElse(null);
+		if (value == null) {
+			secondLevelStatsCounter.recordMisses(1);
+			statsCounter.recordMisses(1);
+
+			return Optional.empty();
+		}
+
+		secondLevelStatsCounter.recordHits(1);
+		statsCounter.recordHits(1);
+		promote(stripe, version, key, value);
+
+		return Optional.of(value);
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Contract.checkArgument(key != null, "Key must not be null");
+
+		V value = getFromFirstLevel(key);
+		if (value != null) {
+			statsCounter.recordHits(1);
+
+			return value;
+		}
+
+		Stripe stripe = stripeFor(key);
+		long version = stripe.version;
+
+		value = secondLevel.getOrDefault(key, null);
+		if (value == null) {
+			secondLevelStatsCounter.recordMisses(1);
+			statsCounter.recordMisses(1);
+
+			return defaultValue;
+		}
+
+		secondLevelStatsCounter.recordHits(1);
+		statsCounter.recordHits(1);
+		promote(stripe, version, key, value);
+
+		return value;
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of the first level of this cache.
+	 * Returns empty statistics unless statistics are recorded.
+	 *
+	 * @since 2.1
+	 */
+	public CacheStats getFirstLevelStats() {
+		return firstLevelStatsCounter.snapshot();
+	}
+
+	/**
+	 * Returns a snapshot of the hits and misses in the second level of this cache, counting lookups after first level misses only.
+	 * Returns empty statistics unless statistics are recorded.
+	 *
+	 * @since 2.1
+	 */
+	public CacheStats getSecondLevelStats() {
+		return secondLevelStatsCounter.snapshot();
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsCounter.snapshot();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return firstLevel.isEmpty() && pendingDemotions.isEmpty() && secondLevel.isEmpty();
+	}
+
+	@Override
+	public void put(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			_put(stripe, key, value);
+		} finally {
+			stripe.lock.unlock();
+		}
+
+		demote();
+	}
+
+	@Override
+	public void putIfAbsent(K key, V value) {
+		Contract.checkArgument(key != null, "Key must not be null");
+		Contract.checkArgument(value != null, "Value must not be null");
+
+		Stripe stripe = stripeFor(key);
+		try {
+			stripe.lock.lock();
+
+			if ((firstLevel.peek(key) == null) && !pendingDemotions.containsKey(key) && (secondLevel.getOrDefault(key, null) == null)) {
+				_put(stripe, key, value);
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+
+		demote();
+	}
+
+	/**
+	 * Starts recording the statistics of this cache using the given counter.
+	 * The statistics of the first level and the hits and misses in the second level are recorded separately.
+	 * Does not affect the statistics recorded by the second level itself.
+	 *
+	 * @throws IllegalArgumentException if {@code statsCounter} is {@code null}
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public void setStatsCounter(StatsCounter statsCounter) {
+		Contract.checkArgument(statsCounter != null, "Stats counter must not be null");
+
+		boolean enabled = (statsCounter != StatsCounter.disabled());
+		firstLevelStatsCounter = enabled ? new ConcurrentStatsCounter() : StatsCounter.disabled();
+		secondLevelStatsCounter = enabled ? new ConcurrentStatsCounter() : StatsCounter.disabled();
+		firstLevel.setStatsCounter(firstLevelStatsCounter);
+
+		this.statsCounter = statsCounter;
+	}
+
+	/**
+	 * Returns the number of entries in this cache, counting entries present in both levels only once.
+	 * Looks up the keys of the first level in the second level, but does not visit the entries of the second level.
+	 *
+	 * @since 2.1
+	 */
+	@Override
+	public int size() {
+		int[] size = { secondLevel.size() };
+		firstLevel.forEach((key, value) -> {
+			if (secondLevel.getOrDefault(key, null) == null) {
+				size[0] += 1;
+			}
+		});
+
+		pendingDemotions.forEach((key, value) -> {
+			if ((firstLevel.peek(key) == null) && (secondLevel.getOrDefault(key, null) == null)) {
+				size[0] += 1;
+			}
+		});
+
+		return size[0];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		forEach((key, value) -> {
+			builder.append(key);
+			builder.append("=");
+			builder.append(value);
+			builder.append(", ");
+		});
+		if (builder.length() > 2) {
+			builder.setLength(builder.length() - 2);
+		}
+		builder.append("}");
+
+		return builder.toString();
+	}
+
+
+	private void _put(Stripe stripe, K key, V value) {
+		stripe.version += 1;
+		pendingDemotions.remove(key);
+
+		if (writePolicy == WritePolicy.WRITE_THROUGH) {
+			secondLevel.put(key, value);
+		} else {
+			// Evicts the outdated value from the second level first, so that a demotion of the new value cannot be evicted afterwards
+			secondLevel.evict(key);
+		}
+
+		firstLevel.put(key, value);
+	}
+
+	private void demote() {
+		for (K key : pendingDemotions.keySet()) {
+			Stripe stripe = stripeFor(key);
+			try {
+				stripe.lock.lock();
+
+				// Writes and evictions of the key remove its pending demotion, so the value is still current if present
+				V value = pendingDemotions.remove(key);
+				if ((value != null) && (firstLevel.peek(key) == null)) {
+					secondLevel.put(key, value);
+				}
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+	}
+
+	private V getFromFirstLevel(K key) {
+		V value = firstLevel.getOrDefault(key, null);
+		if (value == null) {
+			value = pendingDemotions.get(key); // Evicted from the first level, but not written to the second level yet
+		}
+
+		return value;
+	}
+
+	private void promote(Stripe stripe, long version, K key, V value) {
+		try {
+			stripe.lock.lock();
+
+			// The value read from the second level is outdated if the key has been written or evicted since
+			if ((stripe.version == version) && (firstLevel.peek(key) == null) && !pendingDemotions.containsKey(key)) {
+				firstLevel.put(key, value);
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+
+		demote();
+	}
+
+	private Stripe stripeFor(Object key) {
+		int hash = key.hashCode();
+
+		// Spreads the higher bits downwards, since only the lowest bits select the stripe
+		hash ^= (hash >>> 16);
+		hash ^= (hash >>> 8);
+
+		return stripes[hash & (stripes.length - 1)];
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	private static class Stripe {
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private volatile long version; // Incremented under the lock whenever a key of the stripe is written or evicted
+
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+/**
+ * Function determining the weight of a cache entry, such as the size of its value in bytes.
+ *
+ * @since 2.1
+ *
+ * @see BoundedCache
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+	/**
+	 * Returns the weight of the entry with the given key and value.
+	 * The weight must not be negative and must not change while the entry is in the cache.
+	 *
+	 * @since 2.1
+	 */
+	int weigh(K key, V value);
+
+}
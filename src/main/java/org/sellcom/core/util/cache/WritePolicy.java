@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+/**
+ * Policies determining when values written to a multi-level cache reach its lower level.
+ *
+ * @since 2.1
+ *
+ * @see TwoLevelCache
+ */
+public enum WritePolicy {
+
+	/**
+	 * Values are written to the upper level only, and reach the lower level once evicted from the upper level.
+	 * Values previously stored in the lower level are invalidated.
+	 *
+	 * @since 2.1
+	 */
+	WRITE_BACK,
+
+	/**
+	 * Values are written to both levels immediately.
+	 *
+	 * @since 2.1
+	 */
+	WRITE_THROUGH
+
+}
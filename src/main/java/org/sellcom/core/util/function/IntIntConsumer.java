@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.function;
+
+/**
+ * Represents an operation that accepts an {@code int}-valued and a {@code int}-valued argument, and returns no result.
+ * This is the {@code (int, int)} specialization of {@link java.util.function.BiConsumer}.
+ *
+ * @since 2.1
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+
+	/**
+	 * Performs this operation on the given arguments.
+	 *
+	 * @since 2.1
+	 */
+	void accept(int former, int latter);
+
+}
@@ -16,6 +16,8 @@
 	exports org.sellcom.core.util.geography;
 	exports org.sellcom.core.util.platform;
 
+	requires java.management;
+
 	provides java.nio.charset.spi.CharsetProvider
 		with org.sellcom.core.internal.io.charset.MoreCharsetsProvider;
 	provides java.nio.file.spi.FileTypeDetector
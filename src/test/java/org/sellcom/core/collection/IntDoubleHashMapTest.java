@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class IntDoubleHashMapTest {
+
+	private static final double DEFAULT_VALUE = -1.0;
+
+	private static final double EURO = 1.0;
+
+	private static final double JAPANESE_YEN = 114.83;
+
+	private static final double POUND_STERLING = 0.844;
+
+	private static final double RENMINBI = 7.3908;
+
+	private static final double TOLERANCE = 1E-6;
+
+	private static final double UNITED_STATES_DOLLAR = 1.1113;
+
+
+	@Test
+	public void testSetAndRemove() {
+		IntDoubleHashMap currencies = new IntDoubleHashMap(2);
+
+		currencies.set(840, UNITED_STATES_DOLLAR);
+		currencies.set(978, EURO);
+		currencies.set(826, POUND_STERLING);
+		currencies.set(392, JAPANESE_YEN);
+		currencies.setIfAbsent(156, RENMINBI);
+		currencies.setIfAbsent(840, EURO);
+
+		assertThat(currencies.size(), is(equalTo(5)));
+		assertThat(currencies.containsElement(RENMINBI, TOLERANCE), is(true));
+		assertThat(currencies.containsIndex(156), is(true));
+		assertThat(currencies.getOrDefault(840, DEFAULT_VALUE), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.getOrDefault(36, DEFAULT_VALUE), is(equalTo(DEFAULT_VALUE)));
+
+		assertThat(currencies.remove(840, DEFAULT_VALUE), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.remove(840, DEFAULT_VALUE), is(equalTo(DEFAULT_VALUE)));
+		assertThat(currencies.size(), is(equalTo(4)));
+		assertThat(currencies.containsElement(UNITED_STATES_DOLLAR, TOLERANCE), is(false));
+
+		double[] sum = { 0.0 };
+		currencies.forEach((index, element) -> sum[0] += element);
+		assertThat(Math.abs(sum[0] - (EURO + POUND_STERLING + JAPANESE_YEN + RENMINBI)) < TOLERANCE, is(true));
+
+		currencies.clear();
+		assertThat(currencies.isEmpty(), is(true));
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntObjectHashMapTest {
+
+	private static final String EURO = "Euro";
+
+	private static final String JAPANESE_YEN = "Japanese yen";
+
+	private static final String POUND_STERLING = "Pound sterling";
+
+	private static final String RENMINBI = "Renminbi";
+
+	private static final String UNITED_STATES_DOLLAR = "United States dollar";
+
+
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(42L);
+		IntObjectHashMap<Integer> map = new IntObjectHashMap<>(0, 0.9f);
+		Map<Integer, Integer> expectedMap = new HashMap<>();
+
+		// Narrow index range, so that removals often hit long probe sequences
+		for (int i = 0; i < 100_000; i++) {
+			int index = random.nextInt(2_000);
+			if (random.nextInt(3) == 0) {
+				assertThat(map.remove(index), is(equalTo(expectedMap.remove(index))));
+			} else {
+				map.set(index, i);
+				expectedMap.put(index, i);
+			}
+		}
+
+		assertThat(map.size(), is(equalTo(expectedMap.size())));
+		for (int index = 0; index < 2_000; index++) {
+			assertThat(map.get(index), is(equalTo(expectedMap.get(index))));
+		}
+
+		Map<Integer, Integer> actualMap = new HashMap<>();
+		map.forEach(actualMap::put);
+		assertThat(actualMap, is(equalTo(expectedMap)));
+
+		map.trimToSize();
+		assertThat(map.clone().size(), is(equalTo(expectedMap.size())));
+		for (int index = 0; index < 2_000; index++) {
+			assertThat(map.get(index), is(equalTo(expectedMap.get(index))));
+		}
+	}
+
+	@Test
+	public void testSetAndRemove() {
+		IntObjectHashMap<String> currencies = new IntObjectHashMap<>();
+
+		currencies.set(840, UNITED_STATES_DOLLAR);
+		currencies.set(978, EURO);
+		currencies.set(826, POUND_STERLING);
+		currencies.set(392, JAPANESE_YEN);
+		currencies.setIfAbsent(156, RENMINBI);
+		currencies.setIfAbsent(840, EURO);
+
+		assertThat(currencies.size(), is(equalTo(5)));
+		assertThat(currencies.containsElement(RENMINBI), is(true));
+		assertThat(currencies.containsIndex(156), is(true));
+		assertThat(currencies.get(840), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.get(36), is(nullValue()));
+		assertThat(currencies.getOrDefault(36, EURO), is(equalTo(EURO)));
+
+		assertThat(currencies.remove(840), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.remove(840), is(nullValue()));
+		assertThat(currencies.size(), is(equalTo(4)));
+		assertThat(currencies.containsElement(UNITED_STATES_DOLLAR), is(false));
+		assertThat(currencies.containsIndex(840), is(false));
+
+		currencies.clear();
+		assertThat(currencies.isEmpty(), is(true));
+		assertThat(currencies.toString(), is(equalTo("{}")));
+	}
+
+}
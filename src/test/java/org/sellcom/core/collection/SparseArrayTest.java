@@ -21,6 +21,10 @@
 import static org.hamcrest.number.OrderingComparison.lessThan;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Test;
 
 public class SparseArrayTest {
@@ -56,6 +60,97 @@ public class SparseArrayTest {
 	private static final String UNITED_STATES_DOLLAR = "United States dollar";
 
 
+	@Test
+	public void testBulkConstruction() {
+		SparseArray<String> currencies = new SparseArray<>(new int[] { 978, 156, 840, 978 }, new String[] { POUND_STERLING, RENMINBI, UNITED_STATES_DOLLAR, EURO });
+
+		assertThat(currencies.size(), is(equalTo(3)));
+		assertThat(currencies.get(156), is(equalTo(RENMINBI)));
+		assertThat(currencies.get(840), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.get(978), is(equalTo(EURO)));
+
+		currencies.set(1000, JAPANESE_YEN);
+		currencies.set(840, SWISS_FRANC);
+		assertThat(currencies.size(), is(equalTo(4)));
+		assertThat(currencies.get(840), is(equalTo(SWISS_FRANC)));
+		assertThat(currencies.get(1000), is(equalTo(JAPANESE_YEN)));
+	}
+
+	@Test
+	public void testCursor() {
+		SparseArray<String> currencies = new SparseArray<>(new int[] { 36, 156, 392, 826, 840, 978 }, new String[] { AUSTRALIAN_DOLLAR, RENMINBI, JAPANESE_YEN, POUND_STERLING, UNITED_STATES_DOLLAR, EURO });
+		SparseArray.Cursor<String> cursor = currencies.cursor();
+
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(36)));
+		assertThat(cursor.value(), is(equalTo(AUSTRALIAN_DOLLAR)));
+
+		assertThat(cursor.seek(400), is(true));
+		assertThat(cursor.index(), is(equalTo(826)));
+		assertThat(cursor.value(), is(equalTo(POUND_STERLING)));
+
+		assertThat(cursor.seek(840), is(true));
+		assertThat(cursor.index(), is(equalTo(840)));
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(978)));
+		assertThat(cursor.next(), is(false));
+		assertThat(cursor.next(), is(false));
+
+		assertThat(cursor.seek(156), is(true));
+		assertThat(cursor.value(), is(equalTo(RENMINBI)));
+		assertThat(cursor.seek(1000), is(false));
+
+		cursor.reset();
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(36)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCursorBeforeFirstElement() {
+		SparseArray<String> currencies = new SparseArray<>(new int[] { 36 }, new String[] { AUSTRALIAN_DOLLAR });
+
+		currencies.cursor().index();
+	}
+
+	@Test
+	public void testForEachInRange() {
+		SparseArray<String> currencies = new SparseArray<>(new int[] { 36, 156, 392, 826, 840, 978 }, new String[] { AUSTRALIAN_DOLLAR, RENMINBI, JAPANESE_YEN, POUND_STERLING, UNITED_STATES_DOLLAR, EURO });
+
+		List<Integer> indices = new ArrayList<>();
+		List<String> elements = new ArrayList<>();
+		currencies.forEachInRange(156, 840, (index, element) -> {
+			indices.add(index);
+			elements.add(element);
+		});
+		assertThat(indices, is(equalTo(Arrays.asList(156, 392, 826))));
+		assertThat(elements, is(equalTo(Arrays.asList(RENMINBI, JAPANESE_YEN, POUND_STERLING))));
+
+		indices.clear();
+		currencies.forEachInRange(400, 800, (index, element) -> indices.add(index));
+		assertThat(indices.isEmpty(), is(true));
+
+		currencies.forEachInRange(900, Integer.MAX_VALUE, (index, element) -> indices.add(index));
+		assertThat(indices, is(equalTo(Arrays.asList(978))));
+	}
+
+	@Test
+	public void testSetAll() {
+		SparseArray<String> currencies = new SparseArray<>(new int[] { 156, 392, 840 }, new String[] { RENMINBI, JAPANESE_YEN, EURO });
+		SparseArray<String> otherCurrencies = new SparseArray<>(new int[] { 36, 840, 978 }, new String[] { AUSTRALIAN_DOLLAR, UNITED_STATES_DOLLAR, EURO });
+
+		currencies.setAll(otherCurrencies);
+		assertThat(currencies.size(), is(equalTo(5)));
+		assertThat(currencies.get(36), is(equalTo(AUSTRALIAN_DOLLAR)));
+		assertThat(currencies.get(156), is(equalTo(RENMINBI)));
+		assertThat(currencies.get(392), is(equalTo(JAPANESE_YEN)));
+		assertThat(currencies.get(840), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.get(978), is(equalTo(EURO)));
+		assertThat(currencies.indexOf(EURO), is(equalTo(978)));
+
+		currencies.setAll(new SparseArray<>());
+		assertThat(currencies.size(), is(equalTo(5)));
+	}
+
 	@Test
 	public void testSetAndRemove() {
 		SparseArray<String> currencies = new SparseArray<>();
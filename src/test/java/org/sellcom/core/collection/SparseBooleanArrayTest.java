@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class SparseBooleanArrayTest {
+
+	@Test
+	public void testSetAndClear() {
+		SparseBooleanArray array = new SparseBooleanArray();
+
+		array.set(1_000_000, true);
+		array.set(3, true);
+		array.set(63, true);
+		array.set(64, true);
+		array.set(3, true);
+
+		assertThat(array.size(), is(equalTo(4)));
+		assertThat(array.get(63), is(true));
+		assertThat(array.get(62), is(false));
+		assertThat(array.get(999_999), is(false));
+		assertThat(array.toString(), is(equalTo("{3, 63, 64, 1000000}")));
+
+		assertThat(array.nextIndex(0), is(equalTo(3)));
+		assertThat(array.nextIndex(4), is(equalTo(63)));
+		assertThat(array.nextIndex(65), is(equalTo(1_000_000)));
+		assertThat(array.nextIndex(1_000_001), is(equalTo(-1)));
+
+		array.set(64, false);
+		array.set(65, false);
+		assertThat(array.size(), is(equalTo(3)));
+		assertThat(array.nextIndex(64), is(equalTo(1_000_000)));
+
+		array.clear();
+		assertThat(array.isEmpty(), is(true));
+	}
+
+}
@@ -20,6 +20,11 @@
 import static org.hamcrest.number.OrderingComparison.lessThan;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
 public class SparseDoubleArrayTest {
@@ -59,6 +64,145 @@ public class SparseDoubleArrayTest {
 	private static final double UNITED_STATES_DOLLAR = 1.1113;
 
 
+	@Test
+	public void testAddAndScale() {
+		SparseDoubleArray vector = new SparseDoubleArray(new int[] { 1, 3, 5 }, new double[] { 1.0, 2.0, 3.0 });
+		SparseDoubleArray otherVector = new SparseDoubleArray(new int[] { 0, 3, 5, 8 }, new double[] { 4.0, 5.0, -1.5, 6.0 });
+
+		vector.add(otherVector, 2.0);
+		assertThat(vector.toString(), is(equalTo("{[0]=8.0, [1]=1.0, [3]=12.0, [5]=0.0, [8]=12.0}")));
+
+		vector.scale(0.5);
+		assertThat(vector.toString(), is(equalTo("{[0]=4.0, [1]=0.5, [3]=6.0, [5]=0.0, [8]=6.0}")));
+
+		vector.add(vector);
+		assertThat(vector.toString(), is(equalTo("{[0]=8.0, [1]=1.0, [3]=12.0, [5]=0.0, [8]=12.0}")));
+	}
+
+	@Test
+	public void testBulkConstruction() {
+		SparseDoubleArray currencies = new SparseDoubleArray(new int[] { 978, 156, 840, 978 }, new double[] { POUND_STERLING, RENMINBI, UNITED_STATES_DOLLAR, EURO });
+
+		assertThat(currencies.size(), is(equalTo(3)));
+		assertThat(currencies.getOrDefault(156, DEFAULT_VALUE), is(equalTo(RENMINBI)));
+		assertThat(currencies.getOrDefault(840, DEFAULT_VALUE), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.getOrDefault(978, DEFAULT_VALUE), is(equalTo(EURO)));
+
+		currencies.set(1000, JAPANESE_YEN);
+		currencies.set(840, SWISS_FRANC);
+		assertThat(currencies.size(), is(equalTo(4)));
+		assertThat(currencies.getOrDefault(840, DEFAULT_VALUE), is(equalTo(SWISS_FRANC)));
+		assertThat(currencies.getOrDefault(1000, DEFAULT_VALUE), is(equalTo(JAPANESE_YEN)));
+	}
+
+	@Test
+	public void testCursor() {
+		SparseDoubleArray currencies = new SparseDoubleArray(new int[] { 36, 156, 392, 826, 840, 978 }, new double[] { AUSTRALIAN_DOLLAR, RENMINBI, JAPANESE_YEN, POUND_STERLING, UNITED_STATES_DOLLAR, EURO });
+		SparseDoubleArray.Cursor cursor = currencies.cursor();
+
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(36)));
+		assertThat(cursor.value(), is(equalTo(AUSTRALIAN_DOLLAR)));
+
+		assertThat(cursor.seek(400), is(true));
+		assertThat(cursor.index(), is(equalTo(826)));
+		assertThat(cursor.value(), is(equalTo(POUND_STERLING)));
+
+		assertThat(cursor.seek(840), is(true));
+		assertThat(cursor.index(), is(equalTo(840)));
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(978)));
+		assertThat(cursor.next(), is(false));
+		assertThat(cursor.next(), is(false));
+
+		assertThat(cursor.seek(156), is(true));
+		assertThat(cursor.value(), is(equalTo(RENMINBI)));
+		assertThat(cursor.seek(1000), is(false));
+
+		cursor.reset();
+		assertThat(cursor.next(), is(true));
+		assertThat(cursor.index(), is(equalTo(36)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCursorBeforeFirstElement() {
+		SparseDoubleArray currencies = new SparseDoubleArray(new int[] { 36 }, new double[] { AUSTRALIAN_DOLLAR });
+
+		currencies.cursor().index();
+	}
+
+	@Test
+	public void testDotNormAndCosine() {
+		SparseDoubleArray vector = new SparseDoubleArray(new int[] { 1, 3, 5 }, new double[] { 1.0, 2.0, 2.0 });
+		SparseDoubleArray otherVector = new SparseDoubleArray(new int[] { 0, 3, 5, 8 }, new double[] { 4.0, 3.0, -1.0, 6.0 });
+
+		assertThat(vector.dot(otherVector), is(equalTo(4.0)));
+		assertThat(otherVector.dot(vector), is(equalTo(4.0)));
+		assertThat(vector.dot(new SparseDoubleArray()), is(equalTo(0.0)));
+		assertThat(vector.norm(), is(equalTo(3.0)));
+		assertThat(Math.abs(vector.cosine(vector) - 1.0), is(lessThan(TOLERANCE)));
+		assertThat(Math.abs(vector.cosine(otherVector) - (4.0 / (3.0 * Math.sqrt(62.0)))), is(lessThan(TOLERANCE)));
+		assertThat(Double.isNaN(vector.cosine(new SparseDoubleArray())), is(true));
+	}
+
+	@Test
+	public void testForEachInRange() {
+		SparseDoubleArray currencies = new SparseDoubleArray(new int[] { 36, 156, 392, 826, 840, 978 }, new double[] { AUSTRALIAN_DOLLAR, RENMINBI, JAPANESE_YEN, POUND_STERLING, UNITED_STATES_DOLLAR, EURO });
+
+		List<Integer> indices = new ArrayList<>();
+		List<Double> elements = new ArrayList<>();
+		currencies.forEachInRange(156, 840, (index, element) -> {
+			indices.add(index);
+			elements.add(element);
+		});
+		assertThat(indices, is(equalTo(Arrays.asList(156, 392, 826))));
+		assertThat(elements, is(equalTo(Arrays.asList(RENMINBI, JAPANESE_YEN, POUND_STERLING))));
+
+		indices.clear();
+		currencies.forEachInRange(400, 800, (index, element) -> indices.add(index));
+		assertThat(indices.isEmpty(), is(true));
+
+		currencies.forEachInRange(900, Integer.MAX_VALUE, (index, element) -> indices.add(index));
+		assertThat(indices, is(equalTo(Arrays.asList(978))));
+	}
+
+	@Test
+	public void testParallelDot() {
+		Random random = new Random(42L);
+		SparseDoubleArray vector = new SparseDoubleArray();
+		SparseDoubleArray otherVector = new SparseDoubleArray();
+		for (int index = 0; index < 1_000_000; index++) {
+			if (random.nextInt(4) == 0) {
+				vector.set(index, random.nextDouble());
+			}
+			if (random.nextInt(8) == 0) {
+				otherVector.set(index, random.nextDouble());
+			}
+		}
+
+		double product = vector.dot(otherVector);
+		assertThat(Math.abs(vector.parallelDot(otherVector) - product), is(lessThan(TOLERANCE)));
+		assertThat(Math.abs(otherVector.parallelDot(vector) - product), is(lessThan(TOLERANCE)));
+	}
+
+	@Test
+	public void testSetAll() {
+		SparseDoubleArray currencies = new SparseDoubleArray(new int[] { 156, 392, 840 }, new double[] { RENMINBI, JAPANESE_YEN, EURO });
+		SparseDoubleArray otherCurrencies = new SparseDoubleArray(new int[] { 36, 840, 978 }, new double[] { AUSTRALIAN_DOLLAR, UNITED_STATES_DOLLAR, EURO });
+
+		currencies.setAll(otherCurrencies);
+		assertThat(currencies.size(), is(equalTo(5)));
+		assertThat(currencies.getOrDefault(36, DEFAULT_VALUE), is(equalTo(AUSTRALIAN_DOLLAR)));
+		assertThat(currencies.getOrDefault(156, DEFAULT_VALUE), is(equalTo(RENMINBI)));
+		assertThat(currencies.getOrDefault(392, DEFAULT_VALUE), is(equalTo(JAPANESE_YEN)));
+		assertThat(currencies.getOrDefault(840, DEFAULT_VALUE), is(equalTo(UNITED_STATES_DOLLAR)));
+		assertThat(currencies.getOrDefault(978, DEFAULT_VALUE), is(equalTo(EURO)));
+		assertThat(currencies.indexOf(EURO, TOLERANCE), is(equalTo(978)));
+
+		currencies.setAll(new SparseDoubleArray());
+		assertThat(currencies.size(), is(equalTo(5)));
+	}
+
 	@Test
 	public void testSetAndRemove() {
 		SparseDoubleArray currencies = new SparseDoubleArray();
@@ -570,4 +714,14 @@ public void testSetAndRemove() {
 		assertThat(currencies.lastIndexOf(DANISH_KRONE, TOLERANCE), is(lessThan(0)));
 	}
 
+	@Test
+	public void testTop() {
+		SparseDoubleArray vector = new SparseDoubleArray(new int[] { 1, 3, 5, 7, 9 }, new double[] { 2.0, 5.0, 2.0, -1.0, 4.0 });
+
+		assertThat(vector.top(3).toString(), is(equalTo("{[1]=2.0, [3]=5.0, [9]=4.0}")));
+		assertThat(vector.top(1).toString(), is(equalTo("{[3]=5.0}")));
+		assertThat(vector.top(0).isEmpty(), is(true));
+		assertThat(vector.top(10).size(), is(equalTo(5)));
+	}
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class SparseIntArrayTest {
+
+	@Test
+	public void testSetAndRemove() {
+		SparseIntArray array = new SparseIntArray(2);
+
+		array.set(840, 1);
+		array.set(978, 2);
+		array.set(826, 3);
+		array.set(392, 4);
+		array.set(840, 5);
+
+		assertThat(array.size(), is(equalTo(4)));
+		assertThat(array.getOrDefault(840, -1), is(equalTo(5)));
+		assertThat(array.getOrDefault(978, -1), is(equalTo(2)));
+		assertThat(array.getOrDefault(1, -1), is(equalTo(-1)));
+		assertThat(array.indexOf(3), is(equalTo(826)));
+		assertThat(array.containsElement(1), is(false));
+		assertThat(array.toString(), is(equalTo("{[392]=4, [826]=3, [840]=5, [978]=2}")));
+
+		StringBuilder builder = new StringBuilder();
+		array.forEach((index, element) -> builder.append(index).append(':').append(element).append(' '));
+		assertThat(builder.toString(), is(equalTo("392:4 826:3 840:5 978:2 ")));
+
+		assertThat(array.remove(826, -1), is(equalTo(3)));
+		assertThat(array.remove(826, -1), is(equalTo(-1)));
+		array.trimToSize();
+		assertThat(array.size(), is(equalTo(3)));
+		assertThat(array.containsIndex(826), is(false));
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class SparseLongArrayTest {
+
+	@Test
+	public void testCloneAndSetIfAbsent() {
+		SparseLongArray array = new SparseLongArray();
+		array.set(7, 1L);
+		array.setIfAbsent(7, 2L);
+		array.setIfAbsent(3, 3L);
+
+		SparseLongArray clone = array.clone();
+		clone.set(5, 4L);
+		clone.remove(7, -1L);
+
+		assertThat(array.toString(), is(equalTo("{[3]=3, [7]=1}")));
+		assertThat(clone.toString(), is(equalTo("{[3]=3, [5]=4}")));
+
+		array.clear();
+		assertThat(array.isEmpty(), is(true));
+		assertThat(clone.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void testSetAndRemove() {
+		SparseLongArray array = new SparseLongArray(2);
+
+		array.set(840, 1L << 40);
+		array.set(978, 2L);
+		array.set(826, Long.MIN_VALUE);
+		array.set(392, 2L);
+		array.set(840, 5L << 40);
+
+		assertThat(array.size(), is(equalTo(4)));
+		assertThat(array.getOrDefault(840, -1L), is(equalTo(5L << 40)));
+		assertThat(array.getOrDefault(826, -1L), is(equalTo(Long.MIN_VALUE)));
+		assertThat(array.getOrDefault(1, -1L), is(equalTo(-1L)));
+		assertThat(array.indexOf(2L), is(equalTo(392)));
+		assertThat(array.lastIndexOf(2L), is(equalTo(978)));
+		assertThat(array.indexOf(1L << 40), is(equalTo(-1)));
+		assertThat(array.containsElement(1L << 40), is(false));
+		assertThat(array.toString(), is(equalTo("{[392]=2, [826]=-9223372036854775808, [840]=5497558138880, [978]=2}")));
+
+		StringBuilder builder = new StringBuilder();
+		array.forEach((index, element) -> builder.append(index).append(':').append(element).append(' '));
+		assertThat(builder.toString(), is(equalTo("392:2 826:-9223372036854775808 840:5497558138880 978:2 ")));
+
+		assertThat(array.remove(826, -1L), is(equalTo(Long.MIN_VALUE)));
+		assertThat(array.remove(826, -1L), is(equalTo(-1L)));
+		array.trimToSize();
+		assertThat(array.size(), is(equalTo(3)));
+		assertThat(array.containsIndex(826), is(false));
+	}
+
+}
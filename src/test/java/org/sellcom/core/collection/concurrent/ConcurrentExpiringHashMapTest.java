@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection.concurrent;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sellcom.core.internal.test.TestUtils;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalNotification;
+
+public class ConcurrentExpiringHashMapTest {
+
+	@Test
+	public void testComputeResetsTimeToLive() {
+		ConcurrentExpiringHashMap<Integer, Integer> map = new ConcurrentExpiringHashMap<>(10, SECONDS);
+
+		map.setClock(fixedClock(1000));
+		map.put(1, 1);
+		map.put(2, 2);
+
+		map.setClock(fixedClock(8000));
+		map.compute(1, (key, value) -> value + 1);
+		map.merge(2, 1, Integer::sum);
+
+		map.setClock(fixedClock(15000));
+		assertThat(map.get(1), is(equalTo(2)));
+		assertThat(map.get(2), is(equalTo(3)));
+
+		// Expired entries are absent for the remapping functions
+		map.setClock(fixedClock(20000));
+		map.merge(1, 10, Integer::sum);
+		assertThat(map.get(1), is(equalTo(10)));
+		assertThat(map.computeIfPresent(2, (key, value) -> value + 1), is(nullValue()));
+	}
+
+	@Test
+	public void testConcurrentMerge() {
+		ConcurrentExpiringHashMap<Integer, Integer> map = new ConcurrentExpiringHashMap<>(1, SECONDS);
+
+		TestUtils.repeat(10_000, () -> map.merge(1, 1, Integer::sum));
+
+		assertThat(map.get(1), is(equalTo(10_000)));
+	}
+
+	@Test
+	public void testEntriesExpiration() {
+		ConcurrentExpiringHashMap<Integer, String> map = new ConcurrentExpiringHashMap<>(10, SECONDS);
+
+		map.setClock(fixedClock(1000));
+		map.put(1, "one");
+		map.setClock(fixedClock(2000));
+		map.put(2, "two");
+
+		map.setClock(fixedClock(11000));
+		assertThat(map.get(1), is(equalTo("one")));
+		assertThat(map.size(), is(equalTo(2)));
+
+		map.setClock(fixedClock(11001));
+		assertThat(map.get(1), is(nullValue()));
+		assertThat(map.putIfAbsent(1, "uno"), is(nullValue()));
+		assertThat(map.keySet().contains(2), is(true));
+
+		map.setClock(fixedClock(30000));
+		map.reap();
+		assertThat(map.isEmpty(), is(true));
+		assertThat(map.entrySet().iterator().hasNext(), is(false));
+	}
+
+	@Test
+	public void testRemovalListener() {
+		ConcurrentExpiringHashMap<Integer, String> map = new ConcurrentExpiringHashMap<>(10, SECONDS);
+		List<RemovalNotification<Integer, String>> notifications = new ArrayList<>();
+		map.setRemovalListener(notifications::addAll, Runnable::run);
+
+		map.setClock(fixedClock(1000));
+		map.put(1, "one");
+		map.put(2, "two");
+		map.merge(1, "uno", (oldValue, value) -> value);
+		map.remove(2);
+
+		map.setClock(fixedClock(20000));
+		map.reap();
+
+		assertThat(notifications.size(), is(equalTo(3)));
+		assertThat(notifications.get(0), is(equalTo(new RemovalNotification<>(1, "one", RemovalCause.REPLACED))));
+		assertThat(notifications.get(1), is(equalTo(new RemovalNotification<>(2, "two", RemovalCause.EXPLICIT))));
+		assertThat(notifications.get(2), is(equalTo(new RemovalNotification<>(1, "uno", RemovalCause.EXPIRED))));
+	}
+
+
+	private static Clock fixedClock(long millis) {
+		return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.of("UTC"));
+	}
+
+}
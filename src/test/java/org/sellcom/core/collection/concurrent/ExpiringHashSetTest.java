@@ -16,6 +16,8 @@
 package org.sellcom.core.collection.concurrent;
 
 import static java.lang.Boolean.TRUE;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
@@ -25,11 +27,39 @@
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
+import org.sellcom.core.util.ExpiryPolicy;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalNotification;
 
 public class ExpiringHashSetTest {
 
+	@Test
+	public void testClearNotifications() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+		List<RemovalNotification<Integer, String>> notifications = new ArrayList<>();
+		expiringMap.setRemovalListener(notifications::addAll, Runnable::run);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, "one");
+		expiringMap.put(2, "two", 1, HOURS);
+
+		expiringMap.setClock(fixedClock(11001));
+		expiringMap.clear();
+		assertThat(expiringMap.isEmpty(), is(true));
+		assertThat(notifications.size(), is(equalTo(2)));
+		assertThat(notifications.contains(new RemovalNotification<>(1, "one", RemovalCause.EXPIRED)), is(true));
+		assertThat(notifications.contains(new RemovalNotification<>(2, "two", RemovalCause.EXPLICIT)), is(true));
+	}
+
 	@Test
 	public void testEntriesExpiration() {
 		ExpiringHashMap<Integer, Boolean> expiringMap = new ExpiringHashMap<>(10, SECONDS);
@@ -88,6 +118,216 @@ public void testEntriesExpiration() {
 		assertThat(expiringMap.get(5), is(nullValue()));
 	}
 
+	@Test
+	public void testEntryViewsNotAccesses() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(10, SECONDS, ExpiryPolicy.EXPIRE_AFTER_ACCESS);
+		Set<Map.Entry<Integer, String>> entries = expiringMap.entrySet();
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, "one");
+
+		expiringMap.setClock(fixedClock(9000));
+		assertThat(entries.contains(new AbstractMap.SimpleEntry<>(1, "one")), is(true));
+
+		expiringMap.setClock(fixedClock(11001));
+		assertThat(entries.contains(new AbstractMap.SimpleEntry<>(1, "one")), is(false));
+		assertThat(expiringMap.get(1), is(nullValue()));
+	}
+
+	@Test
+	public void testEntryWriteThrough() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, "one");
+		expiringMap.put(2, "two");
+
+		Map.Entry<Integer, String> firstEntry = null;
+		Map.Entry<Integer, String> secondEntry = null;
+		for (Map.Entry<Integer, String> entry : expiringMap.entrySet()) {
+			if (entry.getKey() == 1) {
+				firstEntry = entry;
+			} else {
+				secondEntry = entry;
+			}
+		}
+
+		firstEntry.setValue("uno");
+		firstEntry.setValue("eins");
+		assertThat(expiringMap.get(1), is(equalTo("eins")));
+
+		// Neither removed nor expired entries are written back
+		expiringMap.remove(2);
+		secondEntry.setValue("dos");
+		assertThat(expiringMap.containsKey(2), is(false));
+
+		expiringMap.setClock(fixedClock(11001));
+		firstEntry.setValue("un");
+		assertThat(expiringMap.containsKey(1), is(false));
+	}
+
+	@Test
+	public void testExactExpiration() {
+		ExpiringHashMap<Integer, Boolean> expiringMap = new ExpiringHashMap<>(100, MILLISECONDS);
+
+		expiringMap.setClock(fixedClock(0));
+		expiringMap.put(1, TRUE);
+
+		expiringMap.setClock(fixedClock(100));
+		assertThat(expiringMap.size(), is(equalTo(1)));
+
+		expiringMap.setClock(fixedClock(101));
+		assertThat(expiringMap.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testExpireAfterAccess() {
+		ExpiringHashMap<Integer, Boolean> expiringMap = new ExpiringHashMap<>(10, SECONDS, ExpiryPolicy.EXPIRE_AFTER_ACCESS);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, TRUE);
+		expiringMap.put(2, TRUE);
+
+		expiringMap.setClock(fixedClock(9000));
+		assertThat(expiringMap.get(1), is(equalTo(TRUE)));
+
+		expiringMap.setClock(fixedClock(15000));
+		assertThat(expiringMap.get(1), is(equalTo(TRUE)));
+		assertThat(expiringMap.get(2), is(nullValue()));
+
+		expiringMap.setClock(fixedClock(25001));
+		assertThat(expiringMap.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testLazyExpiration() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(100, MILLISECONDS);
+		List<RemovalNotification<Integer, String>> notifications = new ArrayList<>();
+		expiringMap.setRemovalListener(notifications::addAll, Runnable::run);
+
+		expiringMap.setClock(fixedClock(0));
+		expiringMap.put(1, "one");
+		expiringMap.put(2, "two");
+		expiringMap.put(3, "three");
+
+		// Still within the finest bucket of the timer wheel
+		expiringMap.setClock(fixedClock(101));
+		assertThat(expiringMap.containsKey(1), is(false));
+		assertThat(expiringMap.containsValue("two"), is(false));
+		assertThat(expiringMap.put(2, "dos"), is(nullValue()));
+		assertThat(expiringMap.remove(3), is(nullValue()));
+		assertThat(expiringMap.get(2), is(equalTo("dos")));
+		assertThat(expiringMap.size(), is(equalTo(1)));
+
+		assertThat(notifications.size(), is(equalTo(3)));
+		for (RemovalNotification<Integer, String> notification : notifications) {
+			assertThat(notification.getCause(), is(equalTo(RemovalCause.EXPIRED)));
+		}
+	}
+
+	@Test
+	public void testLiveViews() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+		Set<Integer> keys = expiringMap.keySet();
+		Collection<String> values = expiringMap.values();
+		Set<Map.Entry<Integer, String>> entries = expiringMap.entrySet();
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, "value");
+		expiringMap.setClock(fixedClock(5000));
+		expiringMap.put(2, "value");
+		expiringMap.put(3, "three");
+		assertThat(keys.size(), is(equalTo(3)));
+		assertThat(values.size(), is(equalTo(3)));
+
+		// Expired entries are skipped even before being removed
+		expiringMap.setClock(fixedClock(11001));
+		assertThat(keys.contains(1), is(false));
+		List<String> iteratedValues = new ArrayList<>(values);
+		assertThat(iteratedValues.size(), is(equalTo(2)));
+
+		for (Iterator<Map.Entry<Integer, String>> iterator = entries.iterator(); iterator.hasNext();) {
+			Map.Entry<Integer, String> entry = iterator.next();
+			if (entry.getKey() == 2) {
+				iterator.remove();
+			} else {
+				entry.setValue("tres");
+			}
+		}
+
+		assertThat(expiringMap.get(2), is(nullValue()));
+		assertThat(expiringMap.get(3), is(equalTo("tres")));
+		assertThat(keys.size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void testPerEntryTimeToLive() {
+		ExpiringHashMap<Integer, Boolean> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, TRUE);
+		expiringMap.put(2, TRUE, 1, SECONDS);
+		expiringMap.put(3, TRUE, 1, HOURS);
+
+		expiringMap.setClock(fixedClock(2001));
+		assertThat(expiringMap.get(1), is(equalTo(TRUE)));
+		assertThat(expiringMap.get(2), is(nullValue()));
+
+		expiringMap.setClock(fixedClock(11001));
+		assertThat(expiringMap.get(1), is(nullValue()));
+		assertThat(expiringMap.get(3), is(equalTo(TRUE)));
+		assertThat(expiringMap.size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void testRemovalListener() {
+		ExpiringHashMap<Integer, String> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+		List<Runnable> tasks = new ArrayList<>();
+		List<RemovalNotification<Integer, String>> notifications = new ArrayList<>();
+		expiringMap.setRemovalListener(notifications::addAll, tasks::add);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, "one");
+		expiringMap.put(2, "two");
+		expiringMap.put(3, "three");
+		expiringMap.put(2, "dos");
+		expiringMap.remove(3);
+		assertThat(tasks.size(), is(equalTo(2)));
+
+		expiringMap.setClock(fixedClock(20000));
+		assertThat(expiringMap.isEmpty(), is(true));
+		assertThat(tasks.size(), is(equalTo(3)));
+
+		tasks.forEach(Runnable::run);
+		assertThat(notifications.get(0), is(equalTo(new RemovalNotification<>(2, "two", RemovalCause.REPLACED))));
+		assertThat(notifications.get(1), is(equalTo(new RemovalNotification<>(3, "three", RemovalCause.EXPLICIT))));
+		assertThat(notifications.size(), is(equalTo(4)));
+		assertThat(notifications.get(2).getCause(), is(equalTo(RemovalCause.EXPIRED)));
+		assertThat(notifications.get(3).getCause(), is(equalTo(RemovalCause.EXPIRED)));
+	}
+
+	@Test
+	public void testRemovalAndReplacement() {
+		ExpiringHashMap<Integer, Boolean> expiringMap = new ExpiringHashMap<>(10, SECONDS);
+
+		expiringMap.setClock(fixedClock(1000));
+		expiringMap.put(1, TRUE);
+		expiringMap.put(2, TRUE);
+
+		expiringMap.setClock(fixedClock(5000));
+		assertThat(expiringMap.remove(1), is(equalTo(TRUE)));
+		expiringMap.put(1, TRUE);
+		expiringMap.put(2, TRUE);
+
+		// Neither the removed nor the replaced entries expire the new ones
+		expiringMap.setClock(fixedClock(12000));
+		assertThat(expiringMap.get(1), is(equalTo(TRUE)));
+		assertThat(expiringMap.get(2), is(equalTo(TRUE)));
+
+		expiringMap.setClock(fixedClock(16000));
+		assertThat(expiringMap.isEmpty(), is(true));
+	}
+
 
 	private static Clock fixedClock(long millis) {
 		return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.of("UTC"));
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.collection.concurrent;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ExpiringUuidSetTest {
+
+	@Test
+	public void testAddAndRemove() {
+		ExpiringUuidSet set = new ExpiringUuidSet(10, SECONDS);
+		UUID uuid = UUID.randomUUID();
+
+		assertThat(set.add(uuid), is(true));
+		assertThat(set.add(uuid), is(false));
+		assertThat(set.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), is(true));
+		assertThat(set.size(), is(equalTo(1)));
+
+		assertThat(set.remove(uuid), is(true));
+		assertThat(set.remove(uuid), is(false));
+		assertThat(set.contains(uuid), is(false));
+		assertThat(set.add(uuid), is(true));
+	}
+
+	@Test
+	public void testExpiration() {
+		ExpiringUuidSet set = new ExpiringUuidSet(10, SECONDS);
+
+		set.setClock(fixedClock(1000));
+		set.add(1L, 1L);
+		set.setClock(fixedClock(2000));
+		set.add(1L, 2L);
+
+		set.setClock(fixedClock(11000));
+		assertThat(set.contains(1L, 1L), is(true));
+
+		set.setClock(fixedClock(11001));
+		assertThat(set.contains(1L, 1L), is(false));
+		assertThat(set.contains(1L, 2L), is(true));
+		assertThat(set.add(1L, 1L), is(true));
+		assertThat(set.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void testPurgingOnRehash() {
+		ExpiringUuidSet set = new ExpiringUuidSet(1, SECONDS, 1000);
+		int capacity = set.getCapacity();
+
+		// The table stops growing, since the expired UUIDs are purged instead
+		for (int i = 0; i < 100_000; i++) {
+			set.setClock(fixedClock(i));
+			set.add(i, ~i);
+		}
+
+		assertThat(set.getCapacity(), is(lessThanOrEqualTo(2 * capacity)));
+		assertThat(set.size(), is(equalTo(1001)));
+		assertThat(set.contains(99_000L, ~99_000L), is(true));
+		assertThat(set.contains(98_998L, ~98_998L), is(false));
+	}
+
+
+	private static Clock fixedClock(long millis) {
+		return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.of("UTC"));
+	}
+
+}
@@ -15,9 +15,13 @@
  */
 package org.sellcom.core.internal.io.charset;
 
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
 import static org.sellcom.core.io.charset.MoreCharsets.ISO_8859_16;
 
 import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 
@@ -74,4 +78,16 @@ public void testEncode() throws CharacterCodingException {
 		testCharsetEncoder(encoder, LINE_F_CHARS, LINE_F_BYTES);
 	}
 
+	@Test
+	public void testEncodeUnmappable() {
+		// The JDK provides a charset of the same name, which would take precedence
+		Charset charset = new ISO_8859_16();
+		CharsetEncoder encoder = charset.newEncoder();
+
+		// Unmapped characters both between and after the mapped ones
+		assertThat(encoder.canEncode('\u00A4'), is(false));
+		assertThat(encoder.canEncode('\u4E00'), is(false));
+		assertThat("a\u00A4b\u4E00".getBytes(charset), is(equalTo(new byte[] { 'a', '?', 'b', '?' })));
+	}
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+public class CoarseClockTest {
+
+	@Test
+	public void testMonotonicity() throws InterruptedException {
+		CoarseClock clock = CoarseClock.getDefault();
+		long startTime = clock.millis();
+
+		long previousTime = startTime;
+		for (int i = 0; i < 1_000_000; i++) {
+			long time = clock.millis();
+			assertThat(time, is(greaterThanOrEqualTo(previousTime)));
+			previousTime = time;
+		}
+
+		Thread.sleep(50L);
+		assertThat(clock.millis(), is(greaterThan(startTime)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullUnit() {
+		CoarseClock.withResolution(1L, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullZone() {
+		CoarseClock.getDefault().withZone(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubMillisecondResolution() {
+		CoarseClock.withResolution(999L, MICROSECONDS);
+	}
+
+	@Test
+	public void testTickerSharing() {
+		CoarseClock clock = CoarseClock.getDefault();
+		assertThat(clock.equals(CoarseClock.withResolution(1000L, MICROSECONDS)), is(true));
+		assertThat(clock.equals(CoarseClock.withResolution(1L, SECONDS)), is(false));
+		assertThat(CoarseClock.withResolution(10L, MILLISECONDS).equals(CoarseClock.withResolution(10L, MILLISECONDS)), is(true));
+
+		CoarseClock zonedClock = clock.withZone(ZoneId.of("Europe/Prague"));
+		assertThat(zonedClock.equals(clock), is(false));
+		assertThat(zonedClock.withZone(ZoneOffset.UTC), is(equalTo(clock)));
+		assertThat(zonedClock.withZone(ZoneOffset.UTC).hashCode(), is(equalTo(clock.hashCode())));
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sellcom.core.Threads;
+
+public class AsyncLoadingCacheTest {
+
+	@Test(expected = CompletionException.class)
+	public void testFailedLoad() {
+		Cache<String, String> cache = new AsyncLoadingCache<>(key -> {
+			throw new IllegalStateException();
+		}, Runnable::run);
+
+		try {
+			cache.get("key");
+		} finally {
+			assertThat(cache.isEmpty(), is(true));
+		}
+	}
+
+	@Test
+	public void testRefreshAfterWrite() {
+		AtomicInteger loadCount = new AtomicInteger();
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<>(key -> loadCount.incrementAndGet(), tasks::add, 1, MILLISECONDS);
+
+		CompletableFuture<Integer> future = cache.getAsync("key");
+		tasks.remove().run();
+		assertThat(future.join(), is(equalTo(1)));
+
+		Threads.sleep(10, MILLISECONDS);
+
+		// Stale value is returned while the reload is pending
+		assertThat(cache.getAsync("key").join(), is(equalTo(1)));
+		assertThat(cache.getAsync("key").join(), is(equalTo(1)));
+		assertThat(tasks.size(), is(equalTo(1)));
+
+		tasks.remove().run();
+		assertThat(cache.getOrDefault("key", 0), is(equalTo(2)));
+	}
+
+	@Test
+	public void testSharedLoad() {
+		AtomicInteger loadCount = new AtomicInteger();
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		AsyncLoadingCache<String, String> cache = new AsyncLoadingCache<>(key -> {
+			loadCount.incrementAndGet();
+
+			return key.toUpperCase();
+		}, tasks::add);
+
+		CompletableFuture<String> future1 = cache.getAsync("key");
+		CompletableFuture<String> future2 = cache.getAsync("key");
+		assertThat(future1.isDone(), is(false));
+		assertThat(future1 == future2, is(true));
+		assertThat(cache.getOrDefault("key", "default"), is(equalTo("default")));
+
+		tasks.remove().run();
+		assertThat(tasks.isEmpty(), is(true));
+		assertThat(future2.join(), is(equalTo("KEY")));
+		assertThat(loadCount.get(), is(equalTo(1)));
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.sellcom.core.util.RemovalCause;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void testEvictColdest() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+		for (int i = 0; i < 10; i++) {
+			cache.get(i);
+		}
+
+		assertThat(cache.evictColdest(0.5), is(equalTo(50)));
+		assertThat(cache.size(), is(equalTo(50)));
+		for (int i = 0; i < 10; i++) {
+			assertThat(cache.get(i).isPresent(), is(true));
+		}
+	}
+
+	@Test
+	public void testFrequentEntriesRetained() {
+		Cache<Integer, String> cache = new BoundedCache<>(100);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, Integer.toString(i));
+		}
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 10; i++) {
+				cache.get(i);
+			}
+		}
+
+		for (int i = 100; i < 1100; i++) {
+			cache.put(i, Integer.toString(i));
+		}
+
+		assertThat(cache.size(), is(equalTo(100)));
+		for (int i = 0; i < 10; i++) {
+			assertThat(cache.get(i).isPresent(), is(true));
+		}
+	}
+
+	@Test
+	public void testMaximumSize() {
+		Cache<Integer, Integer> cache = new BoundedCache<>(10, key -> key * key);
+		for (int i = 0; i < 1000; i++) {
+			assertThat(cache.get(i).get(), is(equalTo(i * i)));
+			assertThat(cache.size(), is(lessThan(11)));
+		}
+	}
+
+	@Test
+	public void testMaximumWeight() {
+		BoundedCache<Integer, byte[]> cache = new BoundedCache<>(10_000, (key, value) -> value.length);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, new byte[(i % 3 == 0) ? 1000 : 10]);
+			assertThat(cache.weightedSize(), is(lessThan(10_001L)));
+		}
+
+		cache.put(-1, new byte[20_000]);
+		assertThat(cache.get(-1).isPresent(), is(false));
+
+		long weightedSize = 0L;
+		for (int i = 0; i < 1000; i++) {
+			weightedSize += cache.get(i).map(value -> value.length).orElse(0);
+		}
+		assertThat(cache.weightedSize(), is(equalTo(weightedSize)));
+	}
+
+	@Test
+	public void testOversizedEntryRejected() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(100, (key, value) -> value.length());
+		for (int i = 0; i < 10; i++) {
+			cache.get(999);
+		}
+		for (int i = 0; i < 99; i++) {
+			cache.put(i, "x");
+		}
+
+		cache.put(999, String.join("", Collections.nCopies(500, "x")));
+		assertThat(cache.get(999).isPresent(), is(false));
+		assertThat(cache.size(), is(equalTo(99)));
+		assertThat(cache.weightedSize(), is(equalTo(99L)));
+
+		cache.put(0, String.join("", Collections.nCopies(100, "x")));
+		assertThat(cache.get(0).isPresent(), is(false));
+		assertThat(cache.size(), is(equalTo(98)));
+	}
+
+	@Test
+	public void testReweightedEntries() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(100, (key, value) -> value.length());
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, "x");
+		}
+		for (int i = 0; i < 5; i++) {
+			cache.put(i, String.join("", Collections.nCopies(90, "x")));
+			assertThat(cache.weightedSize(), is(lessThan(101L)));
+		}
+
+		long weightedSize = 0L;
+		for (int i = 0; i < 100; i++) {
+			weightedSize += cache.getOrDefault(i, "").length();
+		}
+		assertThat(cache.weightedSize(), is(equalTo(weightedSize)));
+	}
+
+	@Test
+	public void testStats() {
+		Cache<Integer, Integer> cache = new BoundedCache<>(10, key -> (key < 100) ? key : null);
+		cache.setStatsCounter(new ConcurrentStatsCounter());
+
+		for (int i = 0; i < 20; i++) {
+			cache.get(i);
+		}
+		cache.get(19);
+		cache.get(100);
+		cache.evict(19);
+
+		CacheStats stats = cache.getStats();
+		assertThat(stats.getHitCount(), is(equalTo(1L)));
+		assertThat(stats.getMissCount(), is(equalTo(21L)));
+		assertThat(stats.getLoadSuccessCount(), is(equalTo(20L)));
+		assertThat(stats.getLoadFailureCount(), is(equalTo(1L)));
+		assertThat(stats.getEvictionCount(RemovalCause.SIZE), is(equalTo(10L)));
+		assertThat(stats.getEvictionCount(RemovalCause.EXPLICIT), is(equalTo(1L)));
+	}
+
+	@Test
+	public void testToString() {
+		Cache<String, String> cache = new BoundedCache<>(10);
+		cache.put("key", "value");
+
+		assertThat(cache.toString(), is(equalTo("{key=value}")));
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class CacheMXBeansTest {
+
+	@Test
+	public void testRegisterStatsMXBean() throws JMException {
+		Cache<String, String> cache = new ConcurrentHashSoftCache<>();
+		cache.setStatsCounter(new ConcurrentStatsCounter());
+		cache.put("key", "value");
+		cache.get("key");
+		cache.get("missing");
+
+		ObjectName objectName = CacheMXBeans.registerStatsMXBean(cache, "test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertThat(server.getAttribute(objectName, "HitCount"), is(equalTo(1L)));
+			assertThat(server.getAttribute(objectName, "MissCount"), is(equalTo(1L)));
+			assertThat(server.getAttribute(objectName, "HitRate"), is(equalTo(0.5)));
+			assertThat(server.getAttribute(objectName, "EstimatedSize"), is(equalTo(1L)));
+		} finally {
+			CacheMXBeans.unregisterStatsMXBean("test");
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.sellcom.core.io.MoreFiles;
+
+public class CacheSnapshotsTest {
+
+	private static final Serializer<String> STRING_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public String deserialize(ByteBuffer bytes) {
+			return UTF_8.decode(bytes).toString();
+		}
+
+		@Override
+		public byte[] serialize(String object) {
+			return object.getBytes(UTF_8);
+		}
+
+	};
+
+
+	@Test(expected = IOException.class)
+	public void testInvalidSnapshot() throws IOException {
+		Path directory = Files.createTempDirectory("snapshots");
+		try {
+			Path snapshot = directory.resolve("cache.snapshot");
+			Files.write(snapshot, "Not a snapshot".getBytes(UTF_8));
+
+			CacheSnapshots.load(new SoftCache<>(), snapshot, STRING_SERIALIZER, STRING_SERIALIZER);
+		} finally {
+			MoreFiles.deleteRecursively(directory);
+		}
+	}
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		Path directory = Files.createTempDirectory("snapshots");
+		try {
+			Path snapshot = directory.resolve("cache.snapshot");
+
+			Cache<String, String> cache = new ConcurrentSoftCache<>();
+			for (int i = 0; i < 1000; i++) {
+				cache.put("key" + i, "valueé" + i);
+			}
+			assertThat(CacheSnapshots.save(cache, snapshot, STRING_SERIALIZER, STRING_SERIALIZER), is(equalTo(1000)));
+
+			Cache<String, String> loadedCache = new ConcurrentSoftCache<>();
+			loadedCache.put("key0", "current");
+			assertThat(CacheSnapshots.load(loadedCache, snapshot, STRING_SERIALIZER, STRING_SERIALIZER), is(equalTo(1000)));
+			assertThat(loadedCache.size(), is(equalTo(1000)));
+			assertThat(loadedCache.getOrDefault("key0", null), is(equalTo("current")));
+			assertThat(loadedCache.getOrDefault("key999", null), is(equalTo("valueé999")));
+		} finally {
+			MoreFiles.deleteRecursively(directory);
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.sellcom.core.util.RemovalCause;
+
+public class CacheStatsTest {
+
+	@Test
+	public void testEvictionCountsCopied() {
+		long[] evictionCounts = new long[RemovalCause.values().length];
+		evictionCounts[RemovalCause.SIZE.ordinal()] = 3L;
+
+		CacheStats stats = new CacheStats(1L, 2L, 0L, 0L, 0L, evictionCounts);
+		evictionCounts[RemovalCause.SIZE.ordinal()] = 5L;
+
+		assertThat(stats.getEvictionCount(RemovalCause.SIZE), is(equalTo(3L)));
+		assertThat(stats.getEvictionCount(), is(equalTo(3L)));
+		assertThat(stats.getRequestCount(), is(equalTo(3L)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedEvictionCounts() {
+		new CacheStats(0L, 0L, 0L, 0L, 0L, new long[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeCount() {
+		new CacheStats(-1L, 0L, 0L, 0L, 0L, new long[RemovalCause.values().length]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplacedEvictionCount() {
+		CacheStats.empty().getEvictionCount(RemovalCause.REPLACED);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplacedEvictionRecorded() {
+		new ConcurrentStatsCounter().recordEviction(RemovalCause.REPLACED);
+	}
+
+	@Test
+	public void testReplacedNotPrinted() {
+		assertThat(CacheStats.empty().toString().contains("replaced"), is(false));
+	}
+
+}
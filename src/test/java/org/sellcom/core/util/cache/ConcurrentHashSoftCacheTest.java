@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sellcom.core.internal.test.TestUtils;
+
+public class ConcurrentHashSoftCacheTest {
+
+	@Test
+	public void testEvict() {
+		Cache<String, String> cache = new ConcurrentHashSoftCache<>();
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+
+		cache.evict("key1", "other");
+		assertThat(cache.size(), is(equalTo(2)));
+
+		cache.evict("key1", "value1");
+		assertThat(cache.size(), is(equalTo(1)));
+
+		cache.evict("key2");
+		assertThat(cache.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testSingleFlightLoading() {
+		AtomicInteger loadCount = new AtomicInteger();
+		Cache<String, String> cache = new ConcurrentHashSoftCache<>(key -> {
+			loadCount.incrementAndGet();
+
+			return key.toUpperCase();
+		});
+
+		TestUtils.repeat(1000, () -> {
+			assertThat(cache.get("key").get(), is(equalTo("KEY")));
+		});
+
+		assertThat(loadCount.get(), is(equalTo(1)));
+	}
+
+	@Test
+	public void testToString() {
+		Cache<String, String> cache = new ConcurrentHashSoftCache<>();
+		cache.put("key", "value");
+
+		assertThat(cache.toString(), is(equalTo("{key=value}")));
+	}
+
+}
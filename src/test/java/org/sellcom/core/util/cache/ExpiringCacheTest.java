@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sellcom.core.util.ExpiryPolicy;
+import org.sellcom.core.util.RemovalCause;
+import org.sellcom.core.util.RemovalNotification;
+
+public class ExpiringCacheTest {
+
+	@Test
+	public void testExpireAfterAccess() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, SECONDS, ExpiryPolicy.EXPIRE_AFTER_ACCESS);
+
+		cache.setClock(fixedClock(1000));
+		cache.put(1, "one");
+		cache.put(2, "two");
+
+		cache.setClock(fixedClock(9000));
+		assertThat(cache.getOrDefault(1, null), is(equalTo("one")));
+
+		cache.setClock(fixedClock(15000));
+		assertThat(cache.getOrDefault(1, null), is(equalTo("one")));
+		assertThat(cache.getOrDefault(2, null), is(nullValue()));
+
+		cache.setClock(fixedClock(30000));
+		assertThat(cache.getOrDefault(1, null), is(nullValue()));
+		assertThat(cache.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testExpireAfterWrite() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, SECONDS, ExpiryPolicy.EXPIRE_AFTER_WRITE);
+
+		cache.setClock(fixedClock(1000));
+		cache.put(1, "one");
+		cache.setClock(fixedClock(2000));
+		cache.put(2, "two");
+
+		cache.setClock(fixedClock(10100));
+		assertThat(cache.getOrDefault(1, null), is(equalTo("one")));
+		assertThat(cache.getOrDefault(2, null), is(equalTo("two")));
+
+		cache.setClock(fixedClock(11100));
+		assertThat(cache.getOrDefault(1, null), is(nullValue()));
+		assertThat(cache.getOrDefault(2, null), is(equalTo("two")));
+
+		cache.setClock(fixedClock(12100));
+		assertThat(cache.getOrDefault(2, null), is(nullValue()));
+
+		cache.setClock(fixedClock(20000));
+		assertThat(cache.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testExpiryOfDistantDeadlines() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(3, DAYS, ExpiryPolicy.EXPIRE_AFTER_WRITE);
+
+		cache.setClock(fixedClock(0));
+		for (int i = 0; i < 100; i++) {
+			cache.setClock(fixedClock(HOURS.toMillis(i)));
+			cache.put(i, i);
+		}
+
+		cache.setClock(fixedClock(HOURS.toMillis(72 + 50) + 100));
+		assertThat(cache.size(), is(equalTo(49)));
+
+		cache.setClock(fixedClock(DAYS.toMillis(30)));
+		assertThat(cache.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testExpiryTimeline() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(1, SECONDS, ExpiryPolicy.EXPIRE_AFTER_WRITE);
+
+		cache.setClock(fixedClock(0));
+		for (int i = 0; i < 10_000; i++) {
+			cache.setClock(fixedClock(i));
+			cache.put(i, i);
+		}
+
+		// Expired entries are removed with a delay of at most 64 ms
+		cache.setClock(fixedClock(10_000));
+		assertThat(cache.size(), is(greaterThan(999)));
+		assertThat(cache.size(), is(lessThan(1065)));
+
+		cache.setClock(fixedClock(11_100));
+		assertThat(cache.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testRemovalListener() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, SECONDS, ExpiryPolicy.EXPIRE_AFTER_WRITE);
+		List<RemovalNotification<Integer, String>> notifications = new ArrayList<>();
+		cache.setRemovalListener(notifications::addAll, Runnable::run);
+
+		cache.setClock(fixedClock(1000));
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(1, "uno");
+		cache.evict(2);
+		assertThat(notifications.size(), is(equalTo(2)));
+
+		cache.setClock(fixedClock(20000));
+		assertThat(cache.size(), is(equalTo(0)));
+		assertThat(notifications.get(0), is(equalTo(new RemovalNotification<>(1, "one", RemovalCause.REPLACED))));
+		assertThat(notifications.get(1), is(equalTo(new RemovalNotification<>(2, "two", RemovalCause.EXPLICIT))));
+		assertThat(notifications.get(2), is(equalTo(new RemovalNotification<>(1, "uno", RemovalCause.EXPIRED))));
+	}
+
+
+	private static Clock fixedClock(long millis) {
+		return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.of("UTC"));
+	}
+
+}
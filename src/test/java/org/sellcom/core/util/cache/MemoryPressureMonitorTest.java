@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.junit.Test;
+
+public class MemoryPressureMonitorTest {
+
+	@Test
+	public void testPreviousThresholdsRestored() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ((pool.getType() != MemoryType.HEAP) || !pool.isCollectionUsageThresholdSupported() || (pool.getUsage().getMax() <= 0L)) {
+				continue;
+			}
+
+			long previousThreshold = pool.getCollectionUsageThreshold();
+			long maximum = pool.getUsage().getMax();
+
+			MemoryPressureMonitor monitor = new MemoryPressureMonitor(0.7, 0.9, 0.25);
+			assertThat(pool.getCollectionUsageThreshold(), is(equalTo((long) (0.9 * maximum))));
+
+			MemoryPressureMonitor otherMonitor = new MemoryPressureMonitor(0.5, 0.8, 0.25);
+			try {
+				assertThat(pool.getCollectionUsageThreshold(), is(equalTo((long) (0.8 * maximum))));
+
+				monitor.close();
+				monitor.close();
+				assertThat(pool.getCollectionUsageThreshold(), is(equalTo((long) (0.8 * maximum))));
+			} finally {
+				otherMonitor.close();
+			}
+
+			assertThat(pool.getCollectionUsageThreshold(), is(equalTo(previousThreshold)));
+		}
+	}
+
+	@Test
+	public void testShedding() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1000);
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, i);
+		}
+
+		try (MemoryPressureMonitor monitor = new MemoryPressureMonitor(0.7, 0.9, 0.25)) {
+			monitor.register(cache);
+
+			monitor.onHeapUsage(0.8);
+			assertThat(cache.size(), is(equalTo(100)));
+
+			monitor.onHeapUsage(0.95);
+			assertThat(cache.size(), is(equalTo(75)));
+
+			// Shedding continues until the usage drops below the low watermark
+			monitor.onHeapUsage(0.8);
+			assertThat(cache.size(), is(equalTo(56)));
+
+			monitor.onHeapUsage(0.6);
+			monitor.onHeapUsage(0.8);
+			assertThat(cache.size(), is(equalTo(56)));
+		}
+	}
+
+}
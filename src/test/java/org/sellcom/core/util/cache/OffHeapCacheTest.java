@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class OffHeapCacheTest {
+
+	@Test
+	public void testEvictionOfLeastRecentlyUsed() {
+		OffHeapCache<Integer> cache = new OffHeapCache<>(1024, 512); // 16 chunks of 64 bytes
+
+		for (int i = 0; i < 16; i++) {
+			cache.put(i, bytes(i, 50));
+		}
+		assertThat(cache.getOrDefault(0, null), is(equalTo(bytes(0, 50))));
+
+		cache.put(16, bytes(16, 50));
+		assertThat(cache.size(), is(equalTo(16)));
+		assertThat(cache.getOrDefault(0, null), is(equalTo(bytes(0, 50))));
+		assertThat(cache.getOrDefault(1, null), is(nullValue()));
+	}
+
+	@Test
+	public void testGet() {
+		OffHeapCache<String> cache = new OffHeapCache<>(4096, 1024);
+
+		ByteBuffer value = bytes(7, 100);
+		cache.put("key", value);
+		assertThat(value.position(), is(equalTo(0)));
+
+		ByteBuffer view = cache.get("key").get();
+		assertThat(view, is(equalTo(bytes(7, 100))));
+		assertThat(view.isReadOnly(), is(true));
+		assertThat(view.isDirect(), is(true));
+	}
+
+	@Test
+	public void testPutAll() {
+		OffHeapCache<Integer> cache = new OffHeapCache<>(4096, 1024);
+
+		Map<Integer, ByteBuffer> values = new LinkedHashMap<>();
+		values.put(1, bytes(1, 100));
+		values.put(2, bytes(2, 200));
+		cache.putAll(values);
+		assertThat(cache.size(), is(equalTo(2)));
+		assertThat(cache.getOrDefault(2, null), is(equalTo(bytes(2, 200))));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPutAllWithValueLargerThanSlab() {
+		OffHeapCache<Integer> cache = new OffHeapCache<>(4096, 1024);
+
+		Map<Integer, ByteBuffer> values = new LinkedHashMap<>();
+		values.put(1, bytes(1, 100));
+		values.put(2, bytes(2, 2000));
+		cache.putAll(values);
+	}
+
+	@Test
+	public void testReassignmentOfSlabs() {
+		OffHeapCache<Integer> cache = new OffHeapCache<>(1024, 512);
+
+		for (int i = 0; i < 16; i++) {
+			cache.put(i, bytes(i, 50));
+		}
+
+		cache.put(100, bytes(100, 500));
+		assertThat(cache.getOrDefault(100, null), is(equalTo(bytes(100, 500))));
+		assertThat(cache.size(), is(equalTo(9)));
+
+		cache.put(100, bytes(100, 20));
+		assertThat(cache.getOrDefault(100, null), is(equalTo(bytes(100, 20))));
+	}
+
+	@Test(expected = ReadOnlyBufferException.class)
+	public void testReadOnlyView() {
+		OffHeapCache<String> cache = new OffHeapCache<>(4096, 1024);
+		cache.put("key", bytes(1, 10));
+
+		cache.getOrDefault("key", null).put((byte) 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValueLargerThanSlab() {
+		OffHeapCache<String> cache = new OffHeapCache<>(4096, 1024);
+		cache.put("key", bytes(1, 1025));
+	}
+
+
+	private static ByteBuffer bytes(int seed, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		for (int i = 0; i < length; i++) {
+			buffer.put(i, (byte) (seed + i));
+		}
+
+		return buffer;
+	}
+
+}
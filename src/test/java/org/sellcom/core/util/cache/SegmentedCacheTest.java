@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sellcom.core.internal.test.TestUtils;
+
+public class SegmentedCacheTest {
+
+	@Test
+	public void testConcurrentWrites() {
+		Cache<Integer, Integer> cache = new SegmentedCache<>(8);
+
+		AtomicInteger nextKey = new AtomicInteger();
+		TestUtils.repeat(10_000, () -> {
+			int key = nextKey.getAndIncrement();
+			cache.put(key, key);
+		});
+
+		assertThat(cache.size(), is(equalTo(10_000)));
+
+		AtomicInteger sum = new AtomicInteger();
+		cache.forEach((key, value) -> sum.addAndGet(value));
+		assertThat(sum.get(), is(equalTo(49_995_000)));
+	}
+
+	@Test
+	public void testPutAll() {
+		Cache<Integer, String> cache = new SegmentedCache<>(4);
+
+		Map<Integer, String> entries = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			entries.put(i, String.valueOf(i));
+		}
+		cache.putAll(entries);
+
+		assertThat(cache.size(), is(equalTo(100)));
+		assertThat(cache.getOrDefault(42, null), is(equalTo("42")));
+		assertThat(cache.getOrDefault(99, null), is(equalTo("99")));
+	}
+
+	@Test
+	public void testSegmentFactory() {
+		Cache<String, String> cache = new SegmentedCache<>(3, () -> new SoftCache<>(String::toUpperCase));
+		cache.setStatsCounter(new ConcurrentStatsCounter());
+
+		assertThat(cache.get("key").get(), is(equalTo("KEY")));
+		assertThat(cache.get("key").get(), is(equalTo("KEY")));
+		assertThat(cache.getStats().getHitCount(), is(equalTo(1L)));
+		assertThat(cache.getStats().getLoadSuccessCount(), is(equalTo(1L)));
+	}
+
+}
@@ -19,10 +19,64 @@
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.junit.Test;
+import org.sellcom.core.util.RemovalCause;
 
 public class SoftCacheTest {
 
+	@Test
+	public void testBackgroundExpunging() {
+		Cache<String, String> cache = new SoftCache<>(String::toUpperCase, ExpungePolicy.BACKGROUND);
+		assertThat(cache.get("key").get(), is(equalTo("KEY")));
+		assertThat(cache.size(), is(equalTo(1)));
+
+		cache.evict("key", "KEY");
+		assertThat(cache.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testEvictAllStatistics() {
+		Cache<Integer, String> cache = new SoftCache<>();
+		cache.setStatsCounter(new ConcurrentStatsCounter());
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+
+		cache.evictAll();
+		assertThat(cache.isEmpty(), is(true));
+		assertThat(cache.getStats().getEvictionCount(RemovalCause.EXPLICIT), is(equalTo(3L)));
+	}
+
+	@Test
+	public void testGetAll() {
+		Cache<Integer, String> cache = new ConcurrentSoftCache<>();
+		cache.put(1, "one");
+		cache.put(3, "three");
+
+		AtomicInteger loadCount = new AtomicInteger();
+		Set<Integer> loadedKeys = new HashSet<>();
+		Map<Integer, String> values = cache.getAll(Arrays.asList(1, 2, 3, 4), keys -> {
+			loadCount.incrementAndGet();
+			loadedKeys.addAll(keys);
+
+			return keys.stream().filter(key -> key != 4).collect(Collectors.toMap(Function.identity(), String::valueOf));
+		});
+
+		assertThat(loadCount.get(), is(equalTo(1)));
+		assertThat(loadedKeys, is(equalTo(new HashSet<>(Arrays.asList(2, 4)))));
+		assertThat(values.toString(), is(equalTo("{1=one, 2=2, 3=three}")));
+		assertThat(cache.getOrDefault(2, null), is(equalTo("2")));
+		assertThat(cache.size(), is(equalTo(3)));
+	}
+
 	@Test
 	public void testToString() {
 		Cache<String, String> cache = new SoftCache<>();
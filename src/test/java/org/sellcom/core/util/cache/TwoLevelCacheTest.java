@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015-2018 Petr Zelenka <petr.zelenka@sellcom.org>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sellcom.core.util.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+
+public class TwoLevelCacheTest {
+
+	@Test
+	public void testDemotionAndPromotion() {
+		Cache<Integer, String> secondLevel = new ConcurrentHashSoftCache<>();
+		TwoLevelCache<Integer, String> cache = new TwoLevelCache<>(10, secondLevel, WritePolicy.WRITE_BACK);
+		cache.setStatsCounter(new ConcurrentStatsCounter());
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(i, Integer.toString(i));
+		}
+
+		assertThat(cache.size(), is(equalTo(100)));
+		assertThat(secondLevel.size(), is(equalTo(90)));
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(cache.get(i).get(), is(equalTo(Integer.toString(i))));
+		}
+		assertThat(cache.getStats().getHitCount(), is(equalTo(100L)));
+		assertThat(cache.getSecondLevelStats().getHitCount() + cache.getFirstLevelStats().getHitCount(), is(equalTo(100L)));
+		assertThat(cache.getSecondLevelStats().getHitCount(), is(equalTo(cache.getFirstLevelStats().getMissCount())));
+	}
+
+	@Test
+	public void testInvalidation() {
+		Cache<String, String> secondLevel = new ConcurrentHashSoftCache<>();
+		secondLevel.put("key", "stale");
+
+		Cache<String, String> cache = new TwoLevelCache<>(10, secondLevel, WritePolicy.WRITE_BACK);
+		cache.put("key", "value");
+		assertThat(secondLevel.getOrDefault("key", null), is(nullValue()));
+
+		cache.evict("key");
+		assertThat(cache.getOrDefault("key", null), is(nullValue()));
+	}
+
+	@Test
+	public void testPromotionAfterConcurrentEviction() {
+		InterceptingCache<String, String> secondLevel = new InterceptingCache<>();
+		secondLevel.put("key", "stale");
+
+		Cache<String, String> cache = new TwoLevelCache<>(10, secondLevel);
+		secondLevel.afterLookup = () -> cache.evict("key");
+
+		assertThat(cache.getOrDefault("key", null), is(equalTo("stale")));
+		assertThat(cache.getOrDefault("key", null), is(nullValue()));
+		assertThat(cache.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testPromotionAfterConcurrentWrite() {
+		InterceptingCache<String, String> secondLevel = new InterceptingCache<>();
+		secondLevel.put("key", "stale");
+
+		Cache<String, String> cache = new TwoLevelCache<>(10, secondLevel);
+		secondLevel.afterLookup = () -> cache.put("key", "value");
+
+		assertThat(cache.get("key").get(), is(equalTo("stale")));
+		assertThat(cache.get("key").get(), is(equalTo("value")));
+		assertThat(secondLevel.getOrDefault("key", null), is(equalTo("value")));
+	}
+
+	@Test
+	public void testSize() {
+		Cache<String, String> secondLevel = new ConcurrentHashSoftCache<>();
+		secondLevel.put("first", "1");
+		secondLevel.put("second", "2");
+
+		Cache<String, String> cache = new TwoLevelCache<>(10, secondLevel, WritePolicy.WRITE_BACK);
+		assertThat(cache.get("first").get(), is(equalTo("1")));
+		cache.put("third", "3");
+
+		assertThat(cache.size(), is(equalTo(3)));
+		assertThat(secondLevel.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void testWriteThrough() {
+		Cache<String, String> secondLevel = new ConcurrentHashSoftCache<>(String::toUpperCase);
+		Cache<String, String> cache = new TwoLevelCache<>(10, secondLevel);
+
+		cache.put("key", "value");
+		assertThat(secondLevel.getOrDefault("key", null), is(equalTo("value")));
+
+		assertThat(cache.get("other").get(), is(equalTo("OTHER")));
+		assertThat(cache.size(), is(equalTo(2)));
+	}
+
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+	// ------------------------------------------------------------
+
+	// Runs the given action once after the next lookup, as if it happened concurrently right after the value had been read
+	private static class InterceptingCache<K, V> implements Cache<K, V> {
+
+		private Runnable afterLookup;
+
+		private final Cache<K, V> entries = new ConcurrentHashSoftCache<>();
+
+
+		@Override
+		public void evict(K key) {
+			entries.evict(key);
+		}
+
+		@Override
+		public void evict(K key, V value) {
+			entries.evict(key, value);
+		}
+
+		@Override
+		public void evictAll() {
+			entries.evictAll();
+		}
+
+		@Override
+		public void forEach(BiConsumer<? super K, ? super V> action) {
+			entries.forEach(action);
+		}
+
+		@Override
+		public Optional<V> get(K key) {
+			Optional<V> value = entries.get(key);
+			runAfterLookup();
+
+			return value;
+		}
+
+		@Override
+		public V getOrDefault(K key, V defaultValue) {
+			V value = entries.getOrDefault(key, defaultValue);
+			runAfterLookup();
+
+			return value;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return entries.isEmpty();
+		}
+
+		@Override
+		public void put(K key, V value) {
+			entries.put(key, value);
+		}
+
+		@Override
+		public void putIfAbsent(K key, V value) {
+			entries.putIfAbsent(key, value);
+		}
+
+		@Override
+		public int size() {
+			return entries.size();
+		}
+
+
+		private void runAfterLookup() {
+			Runnable action = afterLookup;
+			afterLookup = null;
+
+			if (action != null) {
+				action.run();
+			}
+		}
+
+	}
+
+}